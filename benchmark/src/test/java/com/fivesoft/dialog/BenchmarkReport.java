@@ -0,0 +1,116 @@
+package com.fivesoft.dialog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects benchmark results and writes them as a JSON report.
+ * Entries are sorted by name, so reports of two releases can be diffed directly.
+ * <p>
+ * Robolectric loads this class again for every test class, so each class writes
+ * its own entries merged into the report written by the classes before it.
+ * The build deletes the report before the tests run.
+ */
+
+final class BenchmarkReport {
+
+    //One entry per line, as written by write()
+    private static final Pattern ENTRY = Pattern.compile("^ {4}\"(.+)\": (\\{.*\\}),?$");
+
+    private static final Map<String, String> entries = new TreeMap<>();
+
+    private BenchmarkReport(){}
+
+    /**
+     * Single operation measured in a loop.
+     */
+
+    interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    /**
+     * Runs the operation {@code warmup + iterations} times and records
+     * wall time and allocated bytes of the measured iterations.
+     */
+
+    static synchronized void measure(String name, int warmup, int iterations, Operation operation) throws Exception {
+        for(int i = 0; i < warmup; i++)
+            operation.run(i);
+
+        long[] times = new long[iterations];
+        long allocStart = Allocations.allocatedBytes();
+        for(int i = 0; i < iterations; i++){
+            long start = System.nanoTime();
+            operation.run(warmup + i);
+            times[i] = System.nanoTime() - start;
+        }
+        long allocated = allocStart < 0 ? -1 : Allocations.allocatedBytes() - allocStart;
+
+        Arrays.sort(times);
+        long sum = 0;
+        for(long t : times)
+            sum += t;
+
+        entries.put(name, String.format(Locale.US,
+                "{\"iterations\": %d, \"meanNs\": %d, \"p50Ns\": %d, \"p90Ns\": %d, \"maxNs\": %d, \"allocBytesPerOp\": %d}",
+                iterations, sum / iterations, times[iterations / 2], times[(int) (iterations * 0.9)], times[iterations - 1],
+                allocated < 0 ? -1 : allocated / iterations));
+    }
+
+    /**
+     * Records a plain value, e.g. a measure count.
+     */
+
+    static synchronized void value(String name, long value){
+        entries.put(name, String.format(Locale.US, "{\"value\": %d}", value));
+    }
+
+    static synchronized void write() throws IOException {
+        String path = System.getProperty("vtdialog.benchmark.report", "build/reports/vtdialog-benchmark.json");
+        File file = new File(path);
+        if(file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+
+        Map<String, String> merged = read(file);
+        merged.putAll(entries);
+
+        List<String> lines = new ArrayList<>();
+        for(Map.Entry<String, String> entry : merged.entrySet())
+            lines.add("    \"" + entry.getKey() + "\": " + entry.getValue());
+
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write("{\n  \"java\": \"" + System.getProperty("java.version") + "\",\n  \"results\": {\n");
+            writer.write(String.join(",\n", lines));
+            writer.write("\n  }\n}\n");
+        }
+    }
+
+    //Entries written by the test classes that ran before.
+    private static Map<String, String> read(File file) throws IOException {
+        Map<String, String> result = new TreeMap<>();
+        if(!file.exists())
+            return result;
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))){
+            String line;
+            while ((line = reader.readLine()) != null){
+                Matcher matcher = ENTRY.matcher(line);
+                if(matcher.matches())
+                    result.put(matcher.group(1), matcher.group(2));
+            }
+        }
+        return result;
+    }
+
+}
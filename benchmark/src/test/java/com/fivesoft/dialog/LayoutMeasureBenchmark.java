@@ -0,0 +1,84 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Compares how many times the dialog body is measured per layout pass
+ * in the flat {@link VTDialogLayout} and in the legacy nested layout.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class LayoutMeasureBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private Activity activity;
+
+    @Before
+    public void setUp(){
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        BenchmarkReport.write();
+    }
+
+    @Test
+    public void measureCount() throws Exception {
+        for(int buttonsStyle : new int[]{VTDialog.BUTTONS_STYLE_HORIZONTAL, VTDialog.BUTTONS_STYLE_VERTICAL}){
+            String style = buttonsStyle == VTDialog.BUTTONS_STYLE_HORIZONTAL ? "horizontal" : "vertical";
+            for(boolean flat : new boolean[]{true, false}){
+                String name = "layout." + (flat ? "flat." : "nested.") + style;
+
+                View root = DialogLayoutPool.inflate(activity, VTDialog.DIALOG_MODE_NORMAL, buttonsStyle, flat);
+                CountingView counter = new CountingView(activity);
+                ((LinearLayout) root.findViewById(R.id.content)).addView(counter);
+
+                pass(root, counter);
+                counter.count = 0;
+                pass(root, counter);
+                BenchmarkReport.value(name + ".contentMeasuresPerPass", counter.count);
+
+                BenchmarkReport.measure(name + ".measureAndLayout", 20, 200, i -> pass(root, counter));
+            }
+        }
+    }
+
+    private static void pass(View root, View counter){
+        counter.requestLayout();
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static class CountingView extends View {
+
+        int count;
+
+        CountingView(Context context){
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            count++;
+            setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), 100);
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.os.Looper;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Wall time and allocation benchmarks of the VTDialog hot paths,
+ * for every dialog mode and buttons style.
+ */
+
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 28)
+public class VTDialogBenchmark {
+
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+    private static final long FRAME_MS = 16;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{2}")
+    public static Collection<Object[]> parameters(){
+        return Arrays.asList(new Object[][]{
+                {VTDialog.DIALOG_MODE_NORMAL, VTDialog.BUTTONS_STYLE_HORIZONTAL, "normal.horizontal"},
+                {VTDialog.DIALOG_MODE_NORMAL, VTDialog.BUTTONS_STYLE_VERTICAL, "normal.vertical"},
+                {VTDialog.DIALOG_MODE_FULLSCREEN, VTDialog.BUTTONS_STYLE_HORIZONTAL, "fullscreen.horizontal"},
+                {VTDialog.DIALOG_MODE_FULLSCREEN, VTDialog.BUTTONS_STYLE_VERTICAL, "fullscreen.vertical"}
+        });
+    }
+
+    private final int dialogMode;
+    private final int buttonsStyle;
+    private final String variant;
+
+    private Activity activity;
+
+    public VTDialogBenchmark(int dialogMode, int buttonsStyle, String variant){
+        this.dialogMode = dialogMode;
+        this.buttonsStyle = buttonsStyle;
+        this.variant = variant;
+    }
+
+    @Before
+    public void setUp(){
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        BenchmarkReport.write();
+    }
+
+    @Test
+    public void createDialog() throws Exception {
+        Method createDialog = VTDialog.class.getDeclaredMethod("createDialog");
+        createDialog.setAccessible(true);
+        BenchmarkReport.measure(variant + ".createDialog", WARMUP, ITERATIONS, i -> createDialog.invoke(newDialog()));
+    }
+
+    @Test
+    public void showNewInstance() throws Exception {
+        BenchmarkReport.measure(variant + ".showNewInstance", WARMUP, ITERATIONS, i -> {
+            VTDialog dialog = newDialog();
+            dialog.show();
+            frame();
+            dialog.dismiss();
+        });
+    }
+
+    @Test
+    public void reshowInstance() throws Exception {
+        VTDialog dialog = newDialog();
+        BenchmarkReport.measure(variant + ".reshowInstance", WARMUP, ITERATIONS, i -> {
+            dialog.show();
+            frame();
+            dialog.dismiss();
+        });
+    }
+
+    @Test
+    public void setTitleAndMessageWhileShowing() throws Exception {
+        VTDialog dialog = newDialog();
+        dialog.show();
+        frame();
+        BenchmarkReport.measure(variant + ".setTitleAndMessageWhileShowing", WARMUP, ITERATIONS, i -> {
+            dialog.setTitle("Title " + i);
+            dialog.setMessage("Message " + i);
+            frame();
+        });
+        dialog.dismiss();
+    }
+
+    @Test
+    public void setupButtonWhileShowing() throws Exception {
+        VTDialog dialog = newDialog();
+        dialog.show();
+        frame();
+        BenchmarkReport.measure(variant + ".setupButtonWhileShowing", WARMUP, ITERATIONS, i -> {
+            dialog.setRightButton("Right " + i, v -> {});
+            frame();
+        });
+        dialog.dismiss();
+    }
+
+    @Test
+    public void buttonHideShowAnimation() throws Exception {
+        VTDialog dialog = newDialog();
+        dialog.show();
+        frame();
+
+        int frames = (int) (300 / FRAME_MS);
+        BenchmarkReport.value(variant + ".buttonHideShowAnimation.framesPerOp", frames * 2L);
+        BenchmarkReport.measure(variant + ".buttonHideShowAnimation", WARMUP / 4, ITERATIONS / 4, i -> {
+            dialog.removeCentralButton();
+            for(int f = 0; f < frames; f++)
+                frame();
+            dialog.setCentralButton("Central", v -> {});
+            for(int f = 0; f < frames; f++)
+                frame();
+        });
+        dialog.dismiss();
+    }
+
+    private VTDialog newDialog(){
+        return VTDialog.from(activity)
+                .setTitle("Title")
+                .setMessage("This is message text.")
+                .setDialogMode(dialogMode)
+                .setButtonsStyle(buttonsStyle)
+                .setLeftButton("Left", v -> {})
+                .setCentralButton("Central", v -> {})
+                .setRightButton("Right", v -> {});
+    }
+
+    private static void frame(){
+        shadowOf(Looper.getMainLooper()).idleFor(FRAME_MS, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.fivesoft.dialog;
+
+import android.animation.TimeInterpolator;
+import android.transition.ChangeBounds;
+import android.transition.Fade;
+import android.transition.TransitionManager;
+import android.transition.TransitionSet;
+import android.view.ViewGroup;
+import android.view.animation.AccelerateDecelerateInterpolator;
+
+/**
+ * Animates showing and hiding of the dialog buttons.
+ * <p>
+ * Instead of changing the button size on every frame (which requests layout
+ * of the whole dialog each frame), the change is applied at once and animated
+ * with a transition: the dialog is laid out once, then bounds are animated
+ * without layout and the button fades in or out on a hardware layer.
+ * Changes made in the same frame share one transition.
+ */
+
+final class ButtonsTransition {
+
+    static final long DEFAULT_DURATION = 250;
+
+    private long duration = DEFAULT_DURATION;
+    private TimeInterpolator interpolator = new AccelerateDecelerateInterpolator();
+    private TransitionSet transition;
+
+    void setDuration(long duration){
+        this.duration = Math.max(0, duration);
+        transition = null;
+    }
+
+    void setInterpolator(TimeInterpolator interpolator){
+        this.interpolator = interpolator;
+        transition = null;
+    }
+
+    long getDuration(){
+        return duration;
+    }
+
+    /**
+     * Call before changing the buttons. The changes made until the next frame
+     * are animated.
+     * @param sceneRoot the view containing the dialog background.
+     */
+
+    void begin(ViewGroup sceneRoot){
+        if(duration == 0 || sceneRoot == null || !sceneRoot.isLaidOut())
+            return;
+        TransitionManager.beginDelayedTransition(sceneRoot, getTransition());
+    }
+
+    private TransitionSet getTransition(){
+        if(transition == null){
+            transition = new TransitionSet()
+                    .setOrdering(TransitionSet.ORDERING_TOGETHER)
+                    .addTransition(new Fade())
+                    .addTransition(new ChangeBounds())
+                    .setDuration(duration)
+                    .setInterpolator(interpolator);
+        }
+        return transition;
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.fivesoft.dialog;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * Drag-to-dismiss gesture of the dialog background (the card) for dialogs
+ * at the bottom of the screen. Gets the touch events before the dialog views,
+ * takes over when the finger moves down and moves the card only with
+ * its translation, so dragging never causes a layout.
+ * <p>
+ * The touch path doesn't allocate: the velocity tracker, the location array
+ * and the animation listeners are created once and reused.
+ */
+
+final class CardSwipe {
+
+    //Part of the card height it must be dragged to be dismissed without a fling
+    private static final float DISMISS_FRACTION = 0.4f;
+    //How far the card can be pulled up, in dp
+    private static final int OVERDRAG_DP = 24;
+    private static final long SETTLE_DURATION = 200;
+    private static final long MIN_FLING_DURATION = 80;
+    private static final long MAX_FLING_DURATION = 250;
+
+    private static final Interpolator SETTLE_INTERPOLATOR = new DecelerateInterpolator(1.5f);
+    private static final Interpolator DISMISS_INTERPOLATOR = new AccelerateInterpolator(0.5f);
+
+    private final Callback callback;
+    private final int touchSlop;
+    private final int minFlingVelocity;
+    private final int maxFlingVelocity;
+    private final float overdrag;
+
+    private final int[] location = new int[2];
+    private VelocityTracker velocityTracker;
+    private View card;
+
+    private boolean tracking = false;
+    private boolean dragging = false;
+    private boolean cancelChildren = false;
+    private boolean settling = false;
+    private float downX, downY;
+    private float startTranslation;
+
+    private final AnimatorListenerAdapter settleListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if(card != null)
+                card.animate().setListener(null);
+            settling = false;
+        }
+    };
+
+    private final AnimatorListenerAdapter dismissListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if(card != null)
+                card.animate().setListener(null);
+            settling = false;
+            callback.onSwiped();
+        }
+    };
+
+    CardSwipe(Context context, Callback callback){
+        this.callback = callback;
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        touchSlop = configuration.getScaledTouchSlop();
+        minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        overdrag = OVERDRAG_DP * context.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * Sets the view moved by the gesture.
+     */
+
+    void setCard(View card){
+        if(this.card != card){
+            reset();
+            this.card = card;
+        }
+    }
+
+    /**
+     * Handles the event first and passes it on to the dialog views unless it's a part of a drag.
+     * Children get {@link MotionEvent#ACTION_CANCEL} when a drag starts.
+     * @param target dispatches the event to the dialog views.
+     * @return true if the event was handled.
+     */
+
+    boolean dispatchTouchEvent(MotionEvent ev, Target target){
+        if(!onTouchEvent(ev))
+            return target.dispatchTouchEvent(ev);
+        if(cancelChildren){
+            cancelChildren = false;
+            int action = ev.getAction();
+            ev.setAction(MotionEvent.ACTION_CANCEL);
+            target.dispatchTouchEvent(ev);
+            ev.setAction(action);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the gesture and puts the card back in place, e.g. when the dialog is dismissed.
+     */
+
+    void reset(){
+        tracking = false;
+        dragging = false;
+        cancelChildren = false;
+        if(card != null){
+            if(settling)
+                card.animate().setListener(null).cancel();
+            card.setTranslationY(0f);
+        }
+        settling = false;
+        if(velocityTracker != null)
+            velocityTracker.clear();
+    }
+
+    void release(){
+        reset();
+        card = null;
+        if(velocityTracker != null){
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    private boolean onTouchEvent(MotionEvent ev){
+        switch (ev.getActionMasked()){
+            case MotionEvent.ACTION_DOWN:
+                tracking = card != null && card.isAttachedToWindow() && callback.canSwipe() && isOnCard(ev);
+                dragging = false;
+                if(!tracking)
+                    return false;
+                if(settling){
+                    //Catch the card in the middle of the animation
+                    card.animate().setListener(null).cancel();
+                    settling = false;
+                }
+                if(velocityTracker == null)
+                    velocityTracker = VelocityTracker.obtain();
+                else
+                    velocityTracker.clear();
+                velocityTracker.addMovement(ev);
+                downX = ev.getRawX();
+                downY = ev.getRawY();
+                startTranslation = card.getTranslationY();
+                return false;
+
+            case MotionEvent.ACTION_MOVE:
+                if(!tracking)
+                    return false;
+                velocityTracker.addMovement(ev);
+                float dy = ev.getRawY() - downY;
+                if(!dragging){
+                    float dx = ev.getRawX() - downX;
+                    if(Math.abs(dx) > touchSlop && Math.abs(dx) > Math.abs(dy)){
+                        //Horizontal gesture, leave it to the dialog views
+                        tracking = false;
+                        return false;
+                    }
+                    if(dy <= touchSlop)
+                        return false;
+                    if(canScrollUp(card, downX, downY)){
+                        tracking = false;
+                        return false;
+                    }
+                    dragging = true;
+                    cancelChildren = true;
+                    //Start from the current point, so the card doesn't jump by the slop
+                    downY = ev.getRawY();
+                    dy = 0;
+                }
+                card.setTranslationY(rubberBand(startTranslation + dy));
+                return true;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if(!tracking)
+                    return false;
+                tracking = false;
+                if(!dragging)
+                    return false;
+                dragging = false;
+                velocityTracker.addMovement(ev);
+                velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+                float velocity = velocityTracker.getYVelocity();
+                boolean canceled = ev.getActionMasked() == MotionEvent.ACTION_CANCEL;
+                if(!canceled && shouldDismiss(velocity))
+                    flingOut(velocity);
+                else
+                    settle();
+                return true;
+        }
+        return tracking && dragging;
+    }
+
+    private boolean shouldDismiss(float velocity){
+        if(velocity > minFlingVelocity)
+            return true;
+        return velocity > -minFlingVelocity && card.getTranslationY() > card.getHeight() * DISMISS_FRACTION;
+    }
+
+    private void settle(){
+        settling = true;
+        card.animate()
+                .translationY(0f)
+                .setDuration(SETTLE_DURATION)
+                .setInterpolator(SETTLE_INTERPOLATOR)
+                .setListener(settleListener)
+                .start();
+    }
+
+    private void flingOut(float velocity){
+        View parent = (View) card.getParent();
+        //Distance from the current position to below the bottom edge of the dialog
+        float target = (parent != null ? parent.getHeight() : card.getBottom()) - card.getTop();
+        float distance = Math.max(0, target - card.getTranslationY());
+        long duration = velocity > 0 ? (long) (distance * 1000 / velocity) : MAX_FLING_DURATION;
+        duration = Math.max(MIN_FLING_DURATION, Math.min(MAX_FLING_DURATION, duration));
+        settling = true;
+        card.animate()
+                .translationY(target)
+                .setDuration(duration)
+                .setInterpolator(DISMISS_INTERPOLATOR)
+                .setListener(dismissListener)
+                .start();
+    }
+
+    //Follows the finger down, resists more and more when pulled up.
+    private float rubberBand(float translation){
+        if(translation >= 0)
+            return translation;
+        return -overdrag * (1 - 1 / (1 - translation / overdrag));
+    }
+
+    private boolean isOnCard(MotionEvent ev){
+        return contains(card, ev.getRawX(), ev.getRawY());
+    }
+
+    private boolean contains(View view, float rawX, float rawY){
+        view.getLocationOnScreen(location);
+        return rawX >= location[0] && rawX < location[0] + view.getWidth()
+                && rawY >= location[1] && rawY < location[1] + view.getHeight();
+    }
+
+    //True when a view under the point can scroll up, e.g. a list, which should get the drag.
+    private boolean canScrollUp(View view, float rawX, float rawY){
+        if(view.getVisibility() != View.VISIBLE || !contains(view, rawX, rawY))
+            return false;
+        if(view.canScrollVertically(-1))
+            return true;
+        if(view instanceof ViewGroup){
+            ViewGroup group = (ViewGroup) view;
+            for(int i = group.getChildCount() - 1; i >= 0; i--){
+                if(canScrollUp(group.getChildAt(i), rawX, rawY))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the events on to the dialog views, usually {@code super::dispatchTouchEvent}
+     * of the host, kept in a field so it isn't created per event.
+     */
+
+    interface Target {
+        boolean dispatchTouchEvent(MotionEvent ev);
+    }
+
+    interface Callback {
+
+        /**
+         * Called when a touch starts on the card.
+         * @return true if the dialog can be dismissed with the gesture now.
+         */
+
+        boolean canSwipe();
+
+        /**
+         * Called when the card was swiped out of the screen.
+         */
+
+        void onSwiped();
+
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.fivesoft.dialog;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.view.View;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+
+/**
+ * Enter and exit animation of the dialog background (the card) made with
+ * property animators on a hardware layer. Used instead of the window
+ * animation, so the window itself appears and disappears instantly and only
+ * the card is scaled, moved and faded.
+ */
+
+final class CardTransition {
+
+    private static final float FROM_SCALE_X = 0.6f;
+    private static final float FROM_SCALE_Y = 0.5f;
+    private static final int TRANSLATION_DP = 48;
+
+    long enterDuration = 200;
+    long exitDuration = 150;
+
+    private final FrameDropCounter frameCounter;
+    private View animatedView;
+    private boolean exiting = false;
+
+    CardTransition(float refreshRate){
+        frameCounter = new FrameDropCounter(refreshRate);
+    }
+
+    boolean isExiting(){
+        return exiting;
+    }
+
+    /**
+     * Plays the enter animation.
+     * @param card view to animate.
+     * @param onEnd called with frame statistics when the animation ends.
+     */
+
+    void enter(View card, FramesCallback onEnd){
+        cancel();
+        animatedView = card;
+        card.setScaleX(FROM_SCALE_X);
+        card.setScaleY(FROM_SCALE_Y);
+        card.setTranslationY(translation(card));
+        card.setAlpha(0f);
+        frameCounter.start();
+        card.animate()
+                .scaleX(1f)
+                .scaleY(1f)
+                .translationY(0f)
+                .alpha(1f)
+                .setDuration(enterDuration)
+                .setInterpolator(new DecelerateInterpolator())
+                .withLayer()
+                .setListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        card.animate().setListener(null);
+                        finish(onEnd, true);
+                    }
+                })
+                .start();
+    }
+
+    /**
+     * Plays the exit animation.
+     * @param card view to animate.
+     * @param onEnd called with frame statistics when the animation ends,
+     *              then the window should be removed.
+     */
+
+    void exit(View card, FramesCallback onEnd){
+        cancel();
+        animatedView = card;
+        exiting = true;
+        frameCounter.start();
+        card.animate()
+                .scaleX(FROM_SCALE_X)
+                .scaleY(FROM_SCALE_Y)
+                .translationY(translation(card))
+                .alpha(0f)
+                .setDuration(exitDuration)
+                .setInterpolator(new AccelerateInterpolator())
+                .withLayer()
+                .setListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        card.animate().setListener(null);
+                        exiting = false;
+                        finish(onEnd, false);
+                        reset(card);
+                    }
+                })
+                .start();
+    }
+
+    /**
+     * Stops a running animation, leaving the card in its final state.
+     */
+
+    void cancel(){
+        if(animatedView != null){
+            animatedView.animate().setListener(null).cancel();
+            frameCounter.stop();
+            reset(animatedView);
+            animatedView = null;
+        }
+        exiting = false;
+    }
+
+    private void finish(FramesCallback onEnd, boolean enter){
+        frameCounter.stop();
+        animatedView = null;
+        if(onEnd != null)
+            onEnd.onFrames(enter, frameCounter.getFrames(), frameCounter.getDroppedFrames(), frameCounter.getDurationMillis());
+    }
+
+    private static void reset(View card){
+        card.setScaleX(1f);
+        card.setScaleY(1f);
+        card.setTranslationY(0f);
+        card.setAlpha(1f);
+    }
+
+    private static float translation(View card){
+        return TRANSLATION_DP * card.getResources().getDisplayMetrics().density;
+    }
+
+    interface FramesCallback {
+        void onFrames(boolean enter, int frames, int droppedFrames, long durationMillis);
+    }
+
+}
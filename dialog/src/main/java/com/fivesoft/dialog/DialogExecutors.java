@@ -0,0 +1,62 @@
+package com.fivesoft.dialog;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads used by the library for work that shouldn't run on the main thread.
+ */
+
+final class DialogExecutors {
+
+    private static volatile Executor background;
+    private static volatile Handler main;
+
+    private DialogExecutors(){}
+
+    /**
+     * Returns the executor used for background work. By default it's a small
+     * pool of daemon threads, replaceable with {@link #setBackground(Executor)}.
+     */
+
+    static Executor background(){
+        Executor executor = background;
+        if(executor == null){
+            synchronized (DialogExecutors.class){
+                if(background == null){
+                    AtomicInteger count = new AtomicInteger();
+                    background = Executors.newFixedThreadPool(2, runnable -> {
+                        Thread thread = new Thread(runnable, "VTDialog-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    });
+                }
+                executor = background;
+            }
+        }
+        return executor;
+    }
+
+    static void setBackground(Executor executor){
+        background = executor;
+    }
+
+    static Handler main(){
+        Handler handler = main;
+        if(handler == null){
+            handler = new Handler(Looper.getMainLooper());
+            main = handler;
+        }
+        return handler;
+    }
+
+    static boolean isMainThread(){
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+}
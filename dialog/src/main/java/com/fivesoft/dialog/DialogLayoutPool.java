@@ -0,0 +1,221 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.WeakHashMap;
+
+/**
+ * Per-activity pool of pre-inflated dialog layouts. Layouts are inflated
+ * on the main thread idle handler, so the work is done between frames
+ * instead of inside {@link VTDialog#show()}.
+ */
+
+final class DialogLayoutPool {
+
+    /**
+     * Max number of ready layouts kept for a single (mode, buttons style, flat) key.
+     */
+
+    static final int MAX_POOL_SIZE = 2;
+
+    private static final WeakHashMap<Activity, DialogLayoutPool> pools = new WeakHashMap<>();
+    private static boolean callbacksRegistered = false;
+
+    private final Activity activity;
+    private final SparseArray<ArrayDeque<View>> layouts = new SparseArray<>();
+    private final SparseArray<Integer> targetSizes = new SparseArray<>();
+    private boolean idleScheduled = false;
+
+    private DialogLayoutPool(Activity activity){
+        this.activity = activity;
+    }
+
+    /**
+     * Schedules inflation of dialog layouts for the given mode and buttons style.
+     * Must be called on the main thread.
+     * @param activity the running activity.
+     * @param dialogMode dialog mode.
+     * @param buttonsStyle buttons style.
+     * @param flat whether {@link VTDialogLayout} based layout is used.
+     * @param count number of layouts to keep ready, at most {@link #MAX_POOL_SIZE}.
+     */
+
+    static void prewarm(Activity activity, int dialogMode, int buttonsStyle, boolean flat, int count){
+        DialogLayoutPool pool = get(activity, true);
+        int key = key(dialogMode, buttonsStyle, flat);
+        pool.targetSizes.put(key, Math.max(0, Math.min(count, MAX_POOL_SIZE)));
+        pool.scheduleFill();
+    }
+
+    /**
+     * Returns a ready dialog layout with the buttons bar attached.
+     * Takes it from the pool if possible, otherwise inflates it.
+     */
+
+    static View obtain(Activity activity, int dialogMode, int buttonsStyle, boolean flat){
+        DialogLayoutPool pool = get(activity, false);
+        if(pool != null){
+            ArrayDeque<View> queue = pool.layouts.get(key(dialogMode, buttonsStyle, flat));
+            if(queue != null && !queue.isEmpty()){
+                View layout = queue.poll();
+                pool.scheduleFill();
+                return layout;
+            }
+        }
+        return inflate(activity, dialogMode, buttonsStyle, flat);
+    }
+
+    /**
+     * Drops all ready layouts of all activities.
+     */
+
+    static void clear(){
+        for(DialogLayoutPool pool : pools.values()){
+            if(pool != null)
+                pool.layouts.clear();
+        }
+    }
+
+    static View inflate(Activity activity, int dialogMode, int buttonsStyle, boolean flat){
+        LayoutInflater inflater = activity.getLayoutInflater();
+        dialogMode = layoutMode(dialogMode);
+
+        //Only the alert mode has the flat variant.
+        if(flat && dialogMode == VTDialog.DIALOG_MODE_NORMAL){
+            View layout = inflater.inflate(R.layout.d_vt_dialog_alert_flat, new FrameLayout(activity), false);
+            VTDialogLayout dialogLayout = layout.findViewById(R.id.dialogLayout);
+            dialogLayout.setButtonsStyle(buttonsStyle);
+            inflater.inflate(
+                    buttonsStyle == VTDialog.BUTTONS_STYLE_HORIZONTAL ? R.layout.d_buttons_flat_horizontal : R.layout.d_buttons_flat_vertical,
+                    dialogLayout, true);
+            return layout;
+        }
+
+        //Inflating with a temporary parent keeps the root layout params from the xml.
+        View layout = inflater.inflate(
+                dialogMode == VTDialog.DIALOG_MODE_FULLSCREEN ? R.layout.d_vt_dialog_fullscreen : R.layout.d_vt_dialog_alert,
+                new FrameLayout(activity), false);
+
+        LinearLayout buttonsBar = layout.findViewById(R.id.buttonsBar);
+        buttonsBar.addView(inflater.inflate(
+                buttonsStyle == VTDialog.BUTTONS_STYLE_HORIZONTAL ? R.layout.d_buttons_horizontal : R.layout.d_buttons_vertical,
+                buttonsBar, false));
+
+        return layout;
+    }
+
+    private static DialogLayoutPool get(Activity activity, boolean create){
+        DialogLayoutPool pool = pools.get(activity);
+        if(pool == null && create){
+            registerCallbacks(activity.getApplication());
+            pool = new DialogLayoutPool(activity);
+            pools.put(activity, pool);
+        }
+        return pool;
+    }
+
+    private static int key(int dialogMode, int buttonsStyle, boolean flat){
+        dialogMode = layoutMode(dialogMode);
+        return (dialogMode << 8) | (flat ? 1 << 4 : 0) | buttonsStyle;
+    }
+
+    //The overlay mode uses the normal mode layout.
+    private static int layoutMode(int dialogMode){
+        return dialogMode == VTDialog.DIALOG_MODE_OVERLAY ? VTDialog.DIALOG_MODE_NORMAL : dialogMode;
+    }
+
+    private void scheduleFill(){
+        if(idleScheduled || Looper.myLooper() != Looper.getMainLooper())
+            return;
+        idleScheduled = true;
+        Looper.myQueue().addIdleHandler(fillHandler);
+    }
+
+    //Inflates one layout per idle pass, so a single pass never takes long.
+    private final MessageQueue.IdleHandler fillHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if(activity.isFinishing() || pools.get(activity) != DialogLayoutPool.this){
+                idleScheduled = false;
+                return false;
+            }
+            for(int i = 0; i < targetSizes.size(); i++){
+                int key = targetSizes.keyAt(i);
+                ArrayDeque<View> queue = layouts.get(key);
+                if(queue == null){
+                    queue = new ArrayDeque<>(MAX_POOL_SIZE);
+                    layouts.put(key, queue);
+                }
+                if(queue.size() < targetSizes.valueAt(i)){
+                    try {
+                        queue.add(inflate(activity, key >> 8, key & 0xF, (key & (1 << 4)) != 0));
+                    } catch (Exception e){
+                        e.printStackTrace();
+                        targetSizes.removeAt(i);
+                    }
+                    return true;
+                }
+            }
+            idleScheduled = false;
+            return false;
+        }
+    };
+
+    private static void registerCallbacks(Application application){
+        if(callbacksRegistered)
+            return;
+        callbacksRegistered = true;
+
+        application.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                clear();
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                clear();
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+        });
+
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityDestroyed(@NonNull Activity activity) {
+                pools.remove(activity);
+            }
+
+            @Override
+            public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {}
+            @Override
+            public void onActivityStarted(@NonNull Activity activity) {}
+            @Override
+            public void onActivityResumed(@NonNull Activity activity) {}
+            @Override
+            public void onActivityPaused(@NonNull Activity activity) {}
+            @Override
+            public void onActivityStopped(@NonNull Activity activity) {}
+            @Override
+            public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {}
+        });
+    }
+
+}
@@ -0,0 +1,320 @@
+package com.fivesoft.dialog;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckedTextView;
+import android.widget.LinearLayout;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * List body of the dialog. Replaces the scrollable message body with
+ * a {@link RecyclerView}, so only visible rows are created. Item updates
+ * are diffed and filtering is done on a background thread.
+ * <p>
+ * Items are identified by their text, also for the checked state.
+ */
+
+final class DialogList {
+
+    static final int CHOICE_MODE_NONE = 0;
+    static final int CHOICE_MODE_SINGLE = 1;
+    static final int CHOICE_MODE_MULTIPLE = 2;
+
+    private VTDialog dialog;
+    private final int choiceMode;
+    private final VTDialog.OnItemClickListener listener;
+
+    private List<CharSequence> items;
+    private final HashSet<String> checked = new HashSet<>();
+    private CharSequence query = null;
+    private int filterGeneration = 0;
+
+    private RecyclerView recyclerView;
+    private View replacedBody;
+    private View movedButtonsBar;
+    private final Adapter adapter = new Adapter();
+
+    DialogList(VTDialog dialog, List<? extends CharSequence> items, int choiceMode, VTDialog.OnItemClickListener listener){
+        this.dialog = dialog;
+        this.items = copy(items);
+        this.choiceMode = choiceMode;
+        this.listener = listener;
+    }
+
+    void setChecked(CharSequence item, boolean isChecked){
+        if(item == null)
+            return;
+        if(choiceMode == CHOICE_MODE_SINGLE)
+            checked.clear();
+        if(isChecked)
+            checked.add(item.toString());
+        else
+            checked.remove(item.toString());
+    }
+
+    List<CharSequence> getCheckedItems(){
+        ArrayList<CharSequence> result = new ArrayList<>();
+        for(CharSequence item : items){
+            if(checked.contains(item.toString()))
+                result.add(item);
+        }
+        return result;
+    }
+
+    RecyclerView getRecyclerView(){
+        return recyclerView;
+    }
+
+    /**
+     * Replaces the items. When the list is displayed, only changed rows are updated.
+     */
+
+    void setItems(List<? extends CharSequence> items){
+        this.items = copy(items);
+        filter(query);
+    }
+
+    /**
+     * Displays only items containing the query (case insensitive).
+     * Filtering is done on a background thread.
+     * @param query the query, null or empty to show all items.
+     */
+
+    void filter(CharSequence query){
+        this.query = query;
+        int generation = ++filterGeneration;
+
+        if(query == null || query.length() == 0){
+            adapter.submitList(items);
+            return;
+        }
+
+        List<CharSequence> source = items;
+        String needle = query.toString().toLowerCase(Locale.getDefault());
+        DialogExecutors.background().execute(() -> {
+            ArrayList<CharSequence> result = new ArrayList<>();
+            for(CharSequence item : source){
+                if(item.toString().toLowerCase(Locale.getDefault()).contains(needle))
+                    result.add(item);
+            }
+            DialogExecutors.main().post(() -> {
+                if(generation == filterGeneration)
+                    adapter.submitList(result);
+            });
+        });
+    }
+
+    /**
+     * Puts the list in place of the dialog body.
+     * @param body the scrollable body of the dialog layout.
+     */
+
+    void attach(View body){
+        if(body == null || body == recyclerView)
+            return;
+        //Still attached to the layout of a previous show
+        if(recyclerView != null && recyclerView.getParent() instanceof ViewGroup)
+            ((ViewGroup) recyclerView.getParent()).removeView(recyclerView);
+        Context context = body.getContext();
+        ViewGroup parent = (ViewGroup) body.getParent();
+
+        if(recyclerView == null){
+            recyclerView = new RecyclerView(context);
+            recyclerView.setLayoutManager(new LinearLayoutManager(context));
+            recyclerView.setAdapter(adapter);
+            recyclerView.setOverScrollMode(View.OVER_SCROLL_IF_CONTENT_SCROLLS);
+        }
+
+        int index = parent.indexOfChild(body);
+        recyclerView.setId(R.id.body);
+        body.setId(View.NO_ID);
+        parent.removeViewAt(index);
+        parent.addView(recyclerView, index, listLayoutParams(parent, body));
+        replacedBody = body;
+
+        //In the fullscreen layout the buttons are inside the body
+        View buttonsBar = body.findViewById(R.id.buttonsBar);
+        if(buttonsBar != null){
+            ((ViewGroup) buttonsBar.getParent()).removeView(buttonsBar);
+            parent.addView(buttonsBar, index + 1);
+            movedButtonsBar = buttonsBar;
+        }
+
+        filter(query);
+    }
+
+    /**
+     * Moves the list to another dialog, which then gets the item clicks. Main thread only.
+     */
+
+    void moveTo(VTDialog dialog){
+        detach();
+        this.dialog = dialog;
+    }
+
+    /**
+     * Puts the original body back.
+     */
+
+    void detach(){
+        if(recyclerView == null || replacedBody == null)
+            return;
+        ViewGroup parent = (ViewGroup) recyclerView.getParent();
+        if(parent != null){
+            if(movedButtonsBar != null){
+                parent.removeView(movedButtonsBar);
+                ViewGroup scrollContent = (ViewGroup) ((ViewGroup) replacedBody).getChildAt(0);
+                scrollContent.addView(movedButtonsBar);
+            }
+            int index = parent.indexOfChild(recyclerView);
+            parent.removeViewAt(index);
+            recyclerView.setId(View.NO_ID);
+            replacedBody.setId(R.id.body);
+            parent.addView(replacedBody, index, replacedBody.getLayoutParams());
+        }
+        replacedBody = null;
+        movedButtonsBar = null;
+        recyclerView = null;
+    }
+
+    //The list takes the space left by the views below it, so a long list doesn't push the buttons out.
+    //A wrap_content parent still shrinks to a short list.
+    private static ViewGroup.LayoutParams listLayoutParams(ViewGroup parent, View body){
+        ViewGroup.LayoutParams params = body.getLayoutParams();
+        if(!(parent instanceof LinearLayout) || ((LinearLayout) parent).getOrientation() != LinearLayout.VERTICAL)
+            return params;
+        LinearLayout.LayoutParams listParams = new LinearLayout.LayoutParams(params.width, 0, 1f);
+        if(params instanceof ViewGroup.MarginLayoutParams){
+            ViewGroup.MarginLayoutParams margins = (ViewGroup.MarginLayoutParams) params;
+            listParams.setMargins(margins.leftMargin, margins.topMargin, margins.rightMargin, margins.bottomMargin);
+        }
+        return listParams;
+    }
+
+    private void onItemClick(int adapterPosition){
+        List<CharSequence> current = adapter.getCurrentList();
+        if(adapterPosition < 0 || adapterPosition >= current.size())
+            return;
+        CharSequence item = current.get(adapterPosition);
+        String key = item.toString();
+        boolean isChecked;
+
+        if(choiceMode == CHOICE_MODE_SINGLE){
+            checked.clear();
+            checked.add(key);
+            isChecked = true;
+            adapter.notifyItemRangeChanged(0, adapter.getItemCount(), PAYLOAD_CHECK);
+        } else if(choiceMode == CHOICE_MODE_MULTIPLE){
+            isChecked = !checked.remove(key);
+            if(isChecked)
+                checked.add(key);
+            adapter.notifyItemChanged(adapterPosition, PAYLOAD_CHECK);
+        } else {
+            isChecked = false;
+        }
+
+        if(listener != null)
+            listener.onItemClick(dialog, items.indexOf(item), item, isChecked);
+
+        if(choiceMode == CHOICE_MODE_NONE)
+            dialog.onListItemClicked();
+    }
+
+    private static List<CharSequence> copy(List<? extends CharSequence> items){
+        if(items == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    private static final Object PAYLOAD_CHECK = new Object();
+
+    private static final DiffUtil.ItemCallback<CharSequence> DIFF = new DiffUtil.ItemCallback<CharSequence>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CharSequence oldItem, @NonNull CharSequence newItem) {
+            return oldItem.toString().equals(newItem.toString());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CharSequence oldItem, @NonNull CharSequence newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private class Adapter extends ListAdapter<CharSequence, Holder> {
+
+        private Drawable checkMark;
+
+        private Adapter(){
+            super(DIFF);
+        }
+
+        @NonNull
+        @Override
+        public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            CheckedTextView view = (CheckedTextView) LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.d_list_item, parent, false);
+            if(choiceMode != CHOICE_MODE_NONE)
+                view.setCheckMarkDrawable(getCheckMark(parent.getContext()));
+            Holder holder = new Holder(view);
+            view.setOnClickListener(v -> onItemClick(holder.getAdapterPosition()));
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull Holder holder, int position) {
+            CharSequence item = getItem(position);
+            holder.view.setText(item);
+            holder.view.setChecked(checked.contains(item.toString()));
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull Holder holder, int position, @NonNull List<Object> payloads) {
+            if(payloads.contains(PAYLOAD_CHECK)){
+                holder.view.setChecked(checked.contains(getItem(position).toString()));
+            } else {
+                onBindViewHolder(holder, position);
+            }
+        }
+
+        //Each row needs its own drawable instance, the state is shared.
+        private Drawable getCheckMark(Context context){
+            if(checkMark == null){
+                TypedArray a = context.obtainStyledAttributes(new int[]{
+                        choiceMode == CHOICE_MODE_SINGLE ? android.R.attr.listChoiceIndicatorSingle : android.R.attr.listChoiceIndicatorMultiple});
+                checkMark = a.getDrawable(0);
+                a.recycle();
+            }
+            if(checkMark == null || checkMark.getConstantState() == null)
+                return null;
+            return checkMark.getConstantState().newDrawable(context.getResources());
+        }
+
+    }
+
+    private static class Holder extends RecyclerView.ViewHolder {
+
+        private final CheckedTextView view;
+
+        private Holder(CheckedTextView view){
+            super(view);
+            this.view = view;
+        }
+
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.fivesoft.dialog;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Timings of a single {@link VTDialog#show()} call.
+ * All times are in nanoseconds, -1 when not measured.
+ * <p>
+ * Set a listener for all dialogs with {@link VTDialog#setDefaultMetricsListener(Listener)}
+ * or for a single one with {@link VTDialog#setMetricsListener(Listener)}.
+ */
+
+public final class DialogMetrics {
+
+    private final int dialogMode;
+    private final int buttonsStyle;
+    private final boolean fullBuild;
+
+    long inflateNanos = -1;
+    long textNanos = 0;
+    long buttonsNanos = 0;
+    long iconNanos = 0;
+    long customizationNanos = 0;
+    long bindNanos = 0;
+    long showToFirstDrawNanos = -1;
+    long enterAnimationNanos = -1;
+    int enterDroppedFrames = -1;
+
+    DialogMetrics(int dialogMode, int buttonsStyle, boolean fullBuild){
+        this.dialogMode = dialogMode;
+        this.buttonsStyle = buttonsStyle;
+        this.fullBuild = fullBuild;
+    }
+
+    /**
+     * Returns the dialog mode, e.g. {@link VTDialog#DIALOG_MODE_NORMAL}.
+     */
+
+    public int getDialogMode() {
+        return dialogMode;
+    }
+
+    /**
+     * Returns the buttons style, e.g. {@link VTDialog#BUTTONS_STYLE_HORIZONTAL}.
+     */
+
+    public int getButtonsStyle() {
+        return buttonsStyle;
+    }
+
+    /**
+     * Returns true when the dialog views were created for this show,
+     * false when views of the previous show were rebound.
+     */
+
+    public boolean isFullBuild() {
+        return fullBuild;
+    }
+
+    /**
+     * Returns time spent getting the layout (from the pool or inflating it),
+     * -1 when the views were rebound.
+     */
+
+    public long getInflateNanos() {
+        return inflateNanos;
+    }
+
+    /**
+     * Returns time spent setting up the title and message.
+     */
+
+    public long getTextNanos() {
+        return textNanos;
+    }
+
+    /**
+     * Returns time spent setting up the buttons.
+     */
+
+    public long getButtonsNanos() {
+        return buttonsNanos;
+    }
+
+    /**
+     * Returns time spent setting up the dialog icon.
+     */
+
+    public long getIconNanos() {
+        return iconNanos;
+    }
+
+    /**
+     * Returns time spent in {@link VTDialog.DialogCustomization} callbacks.
+     */
+
+    public long getCustomizationNanos() {
+        return customizationNanos;
+    }
+
+    /**
+     * Returns total time of binding the dialog properties to the views.
+     */
+
+    public long getBindNanos() {
+        return bindNanos;
+    }
+
+    /**
+     * Returns time from {@link VTDialog#show()} to the first drawn frame of the dialog window.
+     */
+
+    public long getShowToFirstDrawNanos() {
+        return showToFirstDrawNanos;
+    }
+
+    /**
+     * Returns duration of the enter animation, -1 when
+     * {@link VTDialog#WINDOW_ANIMATION_CARD} is not used.
+     */
+
+    public long getEnterAnimationNanos() {
+        return enterAnimationNanos;
+    }
+
+    /**
+     * Returns number of frames dropped during the enter animation, -1 when
+     * {@link VTDialog#WINDOW_ANIMATION_CARD} is not used.
+     */
+
+    public int getEnterDroppedFrames() {
+        return enterDroppedFrames;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "DialogMetrics{mode=%d, buttonsStyle=%d, fullBuild=%b, inflate=%dns, text=%dns, buttons=%dns, icon=%dns, customization=%dns, bind=%dns, showToFirstDraw=%dns, enterAnimation=%dns, enterDroppedFrames=%d}",
+                dialogMode, buttonsStyle, fullBuild, inflateNanos, textNanos, buttonsNanos, iconNanos,
+                customizationNanos, bindNanos, showToFirstDrawNanos, enterAnimationNanos, enterDroppedFrames);
+    }
+
+    /**
+     * Receives dialog timings once the dialog is drawn
+     * (and its {@link VTDialog#WINDOW_ANIMATION_CARD} enter animation ended).
+     */
+
+    public interface Listener {
+        void onDialogMetrics(VTDialog dialog, DialogMetrics metrics);
+    }
+
+}
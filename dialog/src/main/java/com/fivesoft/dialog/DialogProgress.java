@@ -0,0 +1,272 @@
+package com.fivesoft.dialog;
+
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Progress bar with secondary text and stats in the dialog body.
+ * Values can be published from any thread at any rate: only the latest
+ * one is kept and it's applied to the views at most once per frame.
+ * Throughput is a moving average updated with each applied value,
+ * so it doesn't keep the history of samples.
+ */
+
+final class DialogProgress implements Choreographer.FrameCallback {
+
+    private static final int MAX = 10000;
+    private static final long STATS_INTERVAL_NANOS = 250_000_000L;
+    private static final double RATE_TIME_CONSTANT_NANOS = 1_000_000_000d;
+
+    //Marks the text slot as unchanged since the last frame
+    private static final CharSequence NO_CHANGE = new StringBuilder(0);
+
+    private final AtomicReference<Sample> latest = new AtomicReference<>(new Sample(0, -1));
+    private final AtomicReference<CharSequence> pendingText = new AtomicReference<>(NO_CHANGE);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private Runnable binder;
+    private volatile VTDialog.ProgressFormatter formatter = DEFAULT_FORMATTER;
+
+    //Main thread only
+    private View view;
+    private ProgressBar bar;
+    private TextView textView;
+    private TextView statsView;
+    private CharSequence text;
+    private Sample applied;
+    private long lastCurrent;
+    private long lastSampleNanos = -1;
+    private double rate = -1;
+    private long lastStatsNanos = -1;
+    private boolean statsScheduled = false;
+
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+    private final Choreographer.FrameCallback statsFrame = frameTimeNanos -> {
+        statsScheduled = false;
+        if(view != null)
+            updateStats(latest.get(), frameTimeNanos);
+    };
+
+    /**
+     * @param binder called on the main thread when there's a value to apply but
+     *               no view bound, should call {@link #bind(ViewGroup)} if
+     *               the dialog is showing.
+     */
+
+    DialogProgress(Runnable binder){
+        this.binder = binder;
+    }
+
+    /**
+     * Replaces the binder, e.g. when the progress is moved to another dialog. Main thread only.
+     */
+
+    void setBinder(Runnable binder){
+        this.binder = binder;
+    }
+
+    /**
+     * Publishes the progress. Can be called from any thread.
+     * @param total total amount, 0 or less for indeterminate progress.
+     */
+
+    void set(long current, long total){
+        latest.set(new Sample(current, total));
+        schedule();
+    }
+
+    /**
+     * Sets the secondary text. Can be called from any thread.
+     */
+
+    void setText(CharSequence text){
+        pendingText.set(text == null ? "" : text);
+        schedule();
+    }
+
+    void setFormatter(VTDialog.ProgressFormatter formatter){
+        this.formatter = formatter;
+        schedule();
+    }
+
+    /**
+     * Returns true when the progress views are children of the parent.
+     */
+
+    boolean isBoundTo(ViewGroup parent){
+        return view != null && view.getParent() == parent;
+    }
+
+    /**
+     * Adds the progress views to the parent. Main thread only.
+     */
+
+    void bind(ViewGroup parent){
+        if(view == null){
+            view = LayoutInflater.from(parent.getContext()).inflate(R.layout.d_progress, parent, false);
+            bar = view.findViewById(R.id.progressBar);
+            textView = view.findViewById(R.id.progressText);
+            statsView = view.findViewById(R.id.progressStats);
+        }
+        if(view.getParent() instanceof ViewGroup)
+            ((ViewGroup) view.getParent()).removeView(view);
+        parent.addView(view);
+        applied = null;
+        lastStatsNanos = -1;
+        setupText(text);
+        apply(System.nanoTime());
+    }
+
+    /**
+     * Removes the progress views and drops them. Main thread only.
+     */
+
+    void unbind(){
+        if(view != null && view.getParent() instanceof ViewGroup)
+            ((ViewGroup) view.getParent()).removeView(view);
+        view = null;
+        bar = null;
+        textView = null;
+        statsView = null;
+    }
+
+    private void schedule(){
+        if(scheduled.compareAndSet(false, true)){
+            if(DialogExecutors.isMainThread())
+                scheduleFrame.run();
+            else
+                DialogExecutors.main().post(scheduleFrame);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled.set(false);
+        if(view == null && binder != null)
+            binder.run();
+        if(view == null)
+            return;
+        CharSequence newText = pendingText.getAndSet(NO_CHANGE);
+        if(newText != NO_CHANGE)
+            setupText(newText);
+        apply(frameTimeNanos);
+    }
+
+    private void setupText(CharSequence text){
+        this.text = text;
+        if(textView == null)
+            return;
+        if(text == null || text.length() == 0){
+            textView.setVisibility(View.GONE);
+        } else {
+            textView.setText(text);
+            textView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private void apply(long nowNanos){
+        Sample sample = latest.get();
+        if(sample != applied){
+            applied = sample;
+            if(sample.total <= 0){
+                bar.setIndeterminate(true);
+            } else {
+                bar.setIndeterminate(false);
+                long current = Math.max(0, Math.min(sample.current, sample.total));
+                bar.setProgress((int) (current * MAX / sample.total));
+            }
+            updateRate(sample.current, nowNanos);
+        }
+        updateStats(sample, nowNanos);
+    }
+
+    private void updateRate(long current, long nowNanos){
+        if(lastSampleNanos < 0 || current < lastCurrent){
+            //First value or the progress started over
+            rate = -1;
+        } else {
+            long dt = nowNanos - lastSampleNanos;
+            if(dt <= 0)
+                return;
+            double instant = (current - lastCurrent) * 1_000_000_000d / dt;
+            if(rate < 0){
+                rate = instant;
+            } else {
+                double alpha = 1 - Math.exp(-dt / RATE_TIME_CONSTANT_NANOS);
+                rate += alpha * (instant - rate);
+            }
+        }
+        lastCurrent = current;
+        lastSampleNanos = nowNanos;
+    }
+
+    //Stats text changes its width, so it's updated a few times per second to limit layouts.
+    private void updateStats(Sample sample, long nowNanos){
+        VTDialog.ProgressFormatter formatter = this.formatter;
+        if(formatter == null || sample.total <= 0){
+            statsView.setVisibility(View.GONE);
+            return;
+        }
+        long sinceLast = nowNanos - lastStatsNanos;
+        if(lastStatsNanos >= 0 && sinceLast < STATS_INTERVAL_NANOS){
+            //Make sure the last value gets its stats
+            if(!statsScheduled){
+                statsScheduled = true;
+                Choreographer.getInstance().postFrameCallbackDelayed(statsFrame, (STATS_INTERVAL_NANOS - sinceLast) / 1_000_000L);
+            }
+            return;
+        }
+        lastStatsNanos = nowNanos;
+        //Clamped like the bar, so the stats never show more than 100% or a negative time left
+        long current = Math.max(0, Math.min(sample.current, sample.total));
+        double perSecond = Math.max(0, rate);
+        long etaMillis = perSecond > 0 ? (long) ((sample.total - current) * 1000 / perSecond) : -1;
+        try {
+            statsView.setText(formatter.format(current, sample.total, perSecond, etaMillis));
+            statsView.setVisibility(View.VISIBLE);
+        } catch (Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    static final VTDialog.ProgressFormatter DEFAULT_FORMATTER = (current, total, perSecond, etaMillis) -> {
+        StringBuilder builder = new StringBuilder();
+        builder.append(Math.max(0, Math.min(current, total)) * 100 / total).append('%');
+        if(perSecond > 0){
+            builder.append(" · ").append(shortNumber(perSecond)).append("/s");
+            if(etaMillis >= 0){
+                long seconds = etaMillis / 1000;
+                builder.append(" · ").append(String.format(Locale.getDefault(), "%d:%02d", seconds / 60, seconds % 60)).append(" left");
+            }
+        }
+        return builder;
+    };
+
+    private static String shortNumber(double value){
+        if(value >= 1_000_000)
+            return String.format(Locale.getDefault(), "%.1fM", value / 1_000_000);
+        if(value >= 1_000)
+            return String.format(Locale.getDefault(), "%.1fk", value / 1_000);
+        return String.format(Locale.getDefault(), "%.0f", value);
+    }
+
+    private static final class Sample {
+
+        private final long current;
+        private final long total;
+
+        private Sample(long current, long total){
+            this.current = current;
+            this.total = total;
+        }
+
+    }
+
+}
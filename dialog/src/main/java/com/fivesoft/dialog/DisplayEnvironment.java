@@ -0,0 +1,156 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.util.DisplayMetrics;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+
+import com.fivesoft.smartutil.Screen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Display values of a single activity used by its dialogs: density,
+ * dp to px conversions and the size available between the system bars.
+ * <p>
+ * The values are computed once and updated when the activity window
+ * is laid out with a different size or insets (rotation, multi-window
+ * resize, folding, keyboard or system bars changes). Dialogs showing
+ * at that time are notified, so they can resize without being rebuilt.
+ * <p>
+ * Main thread only.
+ */
+
+final class DisplayEnvironment implements View.OnLayoutChangeListener {
+
+    /**
+     * Called when the environment values changed.
+     */
+
+    interface Listener {
+
+        /**
+         * @param densityChanged true when px values of dp sizes changed.
+         */
+
+        void onDisplayEnvironmentChanged(boolean densityChanged);
+
+    }
+
+    //dp values up to this are converted once and kept
+    private static final int CACHED_DP = 64;
+
+    private final Activity activity;
+    private final View decor;
+    private final ArrayList<Listener> listeners = new ArrayList<>();
+    private final int[] pxCache = new int[CACHED_DP + 1];
+
+    private float density;
+    private int availableWidth;
+    private int availableHeight;
+
+    private DisplayEnvironment(Activity activity, View decor){
+        this.activity = activity;
+        this.decor = decor;
+        update();
+    }
+
+    /**
+     * Returns the environment of the activity. It's stored in the activity
+     * window, so it lives as long as the activity does.
+     */
+
+    static DisplayEnvironment of(@NonNull Activity activity){
+        View decor = activity.getWindow().getDecorView();
+        Object tag = decor.getTag(R.id.vt_display_environment);
+        if(tag instanceof DisplayEnvironment)
+            return (DisplayEnvironment) tag;
+        DisplayEnvironment environment = new DisplayEnvironment(activity, decor);
+        decor.setTag(R.id.vt_display_environment, environment);
+        decor.addOnLayoutChangeListener(environment);
+        return environment;
+    }
+
+    /**
+     * Converts dp to px for the current density.
+     */
+
+    int dpToPx(int dp){
+        if(dp >= 0 && dp <= CACHED_DP){
+            int px = pxCache[dp];
+            if(px < 0){
+                px = convert(dp);
+                pxCache[dp] = px;
+            }
+            return px;
+        }
+        return convert(dp);
+    }
+
+    float getDensity(){
+        return density;
+    }
+
+    int getAvailableWidth(){
+        return availableWidth;
+    }
+
+    /**
+     * Returns height of the activity window without the system bars.
+     */
+
+    int getAvailableHeight(){
+        return availableHeight;
+    }
+
+    void addListener(Listener listener){
+        if(!listeners.contains(listener))
+            listeners.add(listener);
+    }
+
+    void removeListener(Listener listener){
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        int oldWidth = availableWidth;
+        int oldHeight = availableHeight;
+        float oldDensity = density;
+        update();
+        boolean densityChanged = oldDensity != density;
+        if(!densityChanged && oldWidth == availableWidth && oldHeight == availableHeight)
+            return;
+        //Listeners may remove themselves
+        for(Listener listener : listeners.toArray(new Listener[0]))
+            listener.onDisplayEnvironmentChanged(densityChanged);
+    }
+
+    private void update(){
+        DisplayMetrics displayMetrics = activity.getResources().getDisplayMetrics();
+        if(displayMetrics.density != density){
+            density = displayMetrics.density;
+            Arrays.fill(pxCache, -1);
+        }
+
+        WindowInsetsCompat insets = ViewCompat.getRootWindowInsets(decor);
+        if(insets != null && decor.getHeight() > 0){
+            availableWidth = decor.getWidth() - insets.getSystemWindowInsetLeft() - insets.getSystemWindowInsetRight();
+            availableHeight = decor.getHeight() - insets.getSystemWindowInsetTop() - insets.getSystemWindowInsetBottom();
+        } else {
+            //Not attached yet or no root insets before API 23
+            availableWidth = displayMetrics.widthPixels;
+            availableHeight = Screen.getAbsoluteHeight(activity) - Screen.getNavigationBarHeight(activity) - Screen.getStatusBarHeight(activity);
+        }
+    }
+
+    private int convert(int dp){
+        return (int) (dp * density + 0.5f);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.fivesoft.dialog;
+
+import android.view.Choreographer;
+
+/**
+ * Counts frames and dropped frames on the main thread between
+ * {@link #start()} and {@link #stop()} using {@link Choreographer} callbacks.
+ * A frame is counted as dropped for every refresh period missed between
+ * two consecutive frames.
+ */
+
+final class FrameDropCounter implements Choreographer.FrameCallback {
+
+    private final long frameIntervalNanos;
+
+    private boolean running = false;
+    private long firstFrameNanos;
+    private long lastFrameNanos;
+    private int frames;
+    private int droppedFrames;
+
+    FrameDropCounter(float refreshRate){
+        frameIntervalNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    void start(){
+        if(running)
+            Choreographer.getInstance().removeFrameCallback(this);
+        running = true;
+        frames = 0;
+        droppedFrames = 0;
+        firstFrameNanos = 0;
+        lastFrameNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop(){
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    int getFrames(){
+        return frames;
+    }
+
+    int getDroppedFrames(){
+        return droppedFrames;
+    }
+
+    /**
+     * Returns time between the first and the last counted frame in ms.
+     */
+
+    long getDurationMillis(){
+        return (lastFrameNanos - firstFrameNanos) / 1_000_000L;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if(!running)
+            return;
+        if(lastFrameNanos == 0){
+            firstFrameNanos = frameTimeNanos;
+        } else {
+            //Rounded, so small vsync jitter isn't counted as a drop
+            long periods = (frameTimeNanos - lastFrameNanos + frameIntervalNanos / 2) / frameIntervalNanos;
+            if(periods > 1)
+                droppedFrames += (int) (periods - 1);
+        }
+        lastFrameNanos = frameTimeNanos;
+        frames++;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.fivesoft.dialog;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.annotation.DrawableRes;
+import androidx.core.content.ContextCompat;
+import androidx.core.graphics.drawable.DrawableCompat;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * LRU cache of tinted dialog and button icons.
+ * <p>
+ * Each entry is a mutated copy of the resource drawable with the tint already
+ * applied, so tinting never leaks into other users of the same resource.
+ * Returned drawables share the cached state: call {@link Drawable#mutate()}
+ * before changing them.
+ * <p>
+ * Entries are kept per theme object, since drawables can use theme attributes.
+ * A theme object lives as long as its activity instance, so a recreated activity,
+ * e.g. after a rotation, loads each icon once again.
+ */
+
+public final class IconCache {
+
+    /**
+     * Use as tint color to get the icon without tint. It's a fully transparent color,
+     * use {@link #getTinted(Context, int, int, int)} to tint an icon with it.
+     */
+
+    public static final int NO_TINT = 0;
+
+    private static final LruCache<Key, Drawable.ConstantState> cache = new LruCache<>(64);
+    private static final Key lookupKey = new Key();
+    private static int hitCount = 0;
+    private static int missCount = 0;
+
+    private IconCache(){}
+
+    /**
+     * Returns the icon drawable.
+     * @param context context used to load the resource.
+     * @param resId drawable resource id.
+     * @param tint tint color or {@link #NO_TINT}.
+     * @param size icon size in px or 0 for intrinsic size.
+     * @return the icon or null when the resource can't be loaded.
+     */
+
+    public static Drawable get(Context context, @DrawableRes int resId, int tint, int size){
+        return get(context, resId, tint != NO_TINT, tint, size);
+    }
+
+    /**
+     * Returns the icon drawable without tint.
+     * @param context context used to load the resource.
+     * @param resId drawable resource id.
+     * @param size icon size in px or 0 for intrinsic size.
+     * @return the icon or null when the resource can't be loaded.
+     */
+
+    public static Drawable get(Context context, @DrawableRes int resId, int size){
+        return get(context, resId, false, 0, size);
+    }
+
+    /**
+     * Returns the icon drawable tinted with the color, a transparent one included.
+     * @param context context used to load the resource.
+     * @param resId drawable resource id.
+     * @param tint tint color.
+     * @param size icon size in px or 0 for intrinsic size.
+     * @return the icon or null when the resource can't be loaded.
+     */
+
+    public static Drawable getTinted(Context context, @DrawableRes int resId, int tint, int size){
+        return get(context, resId, true, tint, size);
+    }
+
+    private static synchronized Drawable get(Context context, @DrawableRes int resId, boolean tinted, int tint, int size){
+        if(resId == 0)
+            return null;
+
+        Resources resources = context.getResources();
+        Resources.Theme theme = context.getTheme();
+        Configuration configuration = resources.getConfiguration();
+        lookupKey.set(resId, tinted, tint, size, configuration.densityDpi, configuration.uiMode, theme);
+
+        Drawable.ConstantState state = cache.get(lookupKey);
+        lookupKey.theme = null;
+        if(state != null){
+            hitCount++;
+            return withSize(state.newDrawable(resources, theme), size);
+        }
+
+        missCount++;
+        Drawable drawable;
+        try {
+            drawable = ContextCompat.getDrawable(context, resId);
+        } catch (Exception e){
+            e.printStackTrace();
+            return null;
+        }
+        if(drawable == null)
+            return null;
+
+        drawable = DrawableCompat.wrap(drawable.mutate());
+        if(tinted){
+            DrawableCompat.setTint(drawable, tint);
+            DrawableCompat.setTintMode(drawable, PorterDuff.Mode.SRC_IN);
+        }
+
+        state = drawable.getConstantState();
+        if(state != null){
+            Key key = new Key();
+            key.set(resId, tinted, tint, size, configuration.densityDpi, configuration.uiMode, theme);
+            //Stored keys don't keep the theme alive, entries of a collected theme never match and age out
+            key.themeRef = new WeakReference<>(theme);
+            key.theme = null;
+            cache.put(key, state);
+        }
+        return withSize(drawable, size);
+    }
+
+    /**
+     * Sets max number of cached icons. Default is 64.
+     */
+
+    public static synchronized void setMaxSize(int maxSize){
+        cache.resize(Math.max(1, maxSize));
+    }
+
+    /**
+     * Sets max size in bytes of the icons decoded from files and uris,
+     * see {@link VTDialog#setDialogIconUri(android.net.Uri)}. Default is 4 MB.
+     */
+
+    public static void setMaxBitmapBytes(int maxBytes){
+        IconLoader.setMaxBytes(maxBytes);
+    }
+
+    public static synchronized void clear(){
+        cache.evictAll();
+        IconLoader.clear();
+    }
+
+    /**
+     * Returns how many times the icon was served from the cache.
+     */
+
+    public static synchronized int getHitCount(){
+        return hitCount;
+    }
+
+    /**
+     * Returns how many times the icon had to be loaded.
+     */
+
+    public static synchronized int getMissCount(){
+        return missCount;
+    }
+
+    public static synchronized void resetCounters(){
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    private static Drawable withSize(Drawable drawable, int size){
+        if(size > 0)
+            drawable.setBounds(0, 0, size, size);
+        else
+            drawable.setBounds(0, 0, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+        return drawable;
+    }
+
+    private static final class Key {
+
+        private int resId, tint, size, density, uiMode, themeHash;
+        private boolean tinted;
+        //The lookup key holds the theme only during a lookup, stored keys hold a weak reference
+        private Resources.Theme theme;
+        private WeakReference<Resources.Theme> themeRef;
+
+        private void set(int resId, boolean tinted, int tint, int size, int density, int uiMode, Resources.Theme theme){
+            this.resId = resId;
+            this.tinted = tinted;
+            this.tint = tinted ? tint : 0;
+            this.size = size;
+            this.density = density;
+            this.uiMode = uiMode;
+            this.theme = theme;
+            this.themeHash = System.identityHashCode(theme);
+        }
+
+        private Resources.Theme theme(){
+            return themeRef != null ? themeRef.get() : theme;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            Resources.Theme theme = theme();
+            return resId == key.resId && tinted == key.tinted && tint == key.tint && size == key.size
+                    && density == key.density && uiMode == key.uiMode
+                    && themeHash == key.themeHash && theme != null && theme == key.theme();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = 31 * result + (tinted ? 1 : 0);
+            result = 31 * result + tint;
+            result = 31 * result + themeHash;
+            result = 31 * result + size;
+            result = 31 * result + density;
+            return 31 * result + uiMode;
+        }
+
+    }
+
+}
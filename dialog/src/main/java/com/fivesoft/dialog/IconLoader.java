@@ -0,0 +1,153 @@
+package com.fivesoft.dialog;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads dialog icons from files, content uris and large bitmaps on a background
+ * thread. Images are decoded with {@link BitmapFactory.Options#inSampleSize} close
+ * to the icon size, so full size images are never kept in memory, and decoded
+ * bitmaps are kept in a memory cache bounded in bytes and shared by all dialogs.
+ * Files and uris are cached by path and size, so a changed file needs {@link #clear()}.
+ */
+
+final class IconLoader {
+
+    private static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(DEFAULT_MAX_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+
+    private IconLoader(){}
+
+    /**
+     * Called on the main thread with the loaded bitmap.
+     */
+
+    interface Callback {
+
+        /**
+         * @param bitmap the icon or null if it couldn't be loaded.
+         */
+
+        void onIconLoaded(Bitmap bitmap);
+
+    }
+
+    /**
+     * Returns the cached icon or null. Can be called from any thread.
+     * @param source {@link Uri}, {@link File} or {@link Bitmap}.
+     * @param size icon size in px.
+     */
+
+    static Bitmap getCached(Object source, int size){
+        if(source instanceof Bitmap && !needsScaling((Bitmap) source, size))
+            return (Bitmap) source;
+        String key = key(source, size);
+        return key == null ? null : cache.get(key);
+    }
+
+    /**
+     * Loads the icon in the background and passes it to the callback on the main thread.
+     * @param source {@link Uri}, {@link File} or {@link Bitmap}.
+     * @param size icon size in px.
+     */
+
+    static void load(Context context, Object source, int size, Callback callback){
+        Context appContext = context.getApplicationContext();
+        DialogExecutors.background().execute(() -> {
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode(appContext, source, size);
+                String key = key(source, size);
+                if(bitmap != null && key != null)
+                    cache.put(key, bitmap);
+            } catch (Exception | OutOfMemoryError e){
+                e.printStackTrace();
+            }
+            Bitmap result = bitmap;
+            DialogExecutors.main().post(() -> callback.onIconLoaded(result));
+        });
+    }
+
+    static void setMaxBytes(int maxBytes){
+        cache.resize(Math.max(1, maxBytes));
+    }
+
+    static void clear(){
+        cache.evictAll();
+    }
+
+    private static Bitmap decode(Context context, Object source, int size) throws IOException {
+        if(source instanceof Bitmap){
+            Bitmap bitmap = (Bitmap) source;
+            if(!needsScaling(bitmap, size))
+                return bitmap;
+            float scale = (float) size / Math.min(bitmap.getWidth(), bitmap.getHeight());
+            return Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        }
+
+        //First pass reads only the image size
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try(InputStream in = open(context, source)){
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if(options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, size);
+        try(InputStream in = open(context, source)){
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    private static InputStream open(Context context, Object source) throws IOException {
+        if(source instanceof File)
+            return new FileInputStream((File) source);
+        InputStream in = context.getContentResolver().openInputStream((Uri) source);
+        if(in == null)
+            throw new IOException("Can't open " + source);
+        return in;
+    }
+
+    //Largest power of 2 that keeps both sides at least the icon size.
+    static int sampleSize(int width, int height, int size){
+        int sampleSize = 1;
+        if(size <= 0)
+            return sampleSize;
+        while(width / (sampleSize * 2) >= size && height / (sampleSize * 2) >= size)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    //Bitmaps a lot bigger than the icon are scaled down, so a small icon doesn't draw a large texture.
+    private static boolean needsScaling(Bitmap bitmap, int size){
+        return size > 0 && Math.min(bitmap.getWidth(), bitmap.getHeight()) > size * 2;
+    }
+
+    //Bitmaps aren't cached, they belong to the caller and have no stable key.
+    private static String key(Object source, int size){
+        if(source instanceof File)
+            return "file:" + ((File) source).getAbsolutePath() + '#' + size;
+        if(source instanceof Uri)
+            return source.toString() + '#' + size;
+        return null;
+    }
+
+}
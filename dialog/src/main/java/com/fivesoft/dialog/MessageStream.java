@@ -0,0 +1,218 @@
+package com.fivesoft.dialog;
+
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streaming dialog message. Chunks appended from any thread are collected
+ * and applied to the message TextView at most once per frame. The text is
+ * kept within max lines and chars by dropping the oldest part, and the body
+ * stays scrolled to the bottom unless the user scrolled up.
+ */
+
+final class MessageStream implements Choreographer.FrameCallback {
+
+    private final Object lock = new Object();
+    private final StringBuilder pending = new StringBuilder();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    //Main thread only
+    private final SpannableStringBuilder buffer = new SpannableStringBuilder();
+    private int lineCount = 0;
+    private TextView textView;
+    private View scrollView;
+    private Runnable binder;
+
+    private volatile int maxLines = 1000;
+    private volatile int maxChars = 64 * 1024;
+
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+    private final Runnable scrollToBottom = this::scrollToBottom;
+
+    /**
+     * @param binder called on the main thread when there's text to apply but
+     *               no view bound, should call {@link #bind(TextView, View)} if
+     *               the dialog is showing.
+     */
+
+    MessageStream(Runnable binder){
+        this.binder = binder;
+    }
+
+    /**
+     * Replaces the binder, e.g. when the stream is moved to another dialog. Main thread only.
+     */
+
+    void setBinder(Runnable binder){
+        this.binder = binder;
+    }
+
+    void setLimits(int maxLines, int maxChars){
+        this.maxLines = Math.max(1, maxLines);
+        this.maxChars = Math.max(1, maxChars);
+    }
+
+    /**
+     * Appends the chunk. Can be called from any thread.
+     */
+
+    void append(CharSequence chunk){
+        if(chunk == null || chunk.length() == 0)
+            return;
+        synchronized (lock){
+            pending.append(chunk);
+            //Older pending text would be trimmed anyway
+            if(pending.length() > maxChars)
+                pending.delete(0, pending.length() - maxChars);
+        }
+        if(scheduled.compareAndSet(false, true)){
+            if(DialogExecutors.isMainThread())
+                scheduleFrame.run();
+            else
+                DialogExecutors.main().post(scheduleFrame);
+        }
+    }
+
+    /**
+     * Returns true when there is streamed text to display.
+     */
+
+    boolean isActive(){
+        if(buffer.length() > 0)
+            return true;
+        synchronized (lock){
+            return pending.length() > 0;
+        }
+    }
+
+    /**
+     * Displays the stream in the given views. Main thread only.
+     * @param textView the message view.
+     * @param scrollView the scrollable body containing the message, may be null.
+     */
+
+    void bind(TextView textView, View scrollView){
+        this.textView = textView;
+        this.scrollView = scrollView;
+        textView.setText(buffer, TextView.BufferType.EDITABLE);
+        textView.setVisibility(View.VISIBLE);
+        if(scrollView != null)
+            scrollView.post(scrollToBottom);
+    }
+
+    /**
+     * Stops displaying the stream, keeping the text. Main thread only.
+     */
+
+    void unbind(){
+        if(scrollView != null)
+            scrollView.removeCallbacks(scrollToBottom);
+        textView = null;
+        scrollView = null;
+    }
+
+    /**
+     * Drops all streamed text. Main thread only.
+     */
+
+    void reset(){
+        synchronized (lock){
+            pending.setLength(0);
+        }
+        buffer.clear();
+        lineCount = 0;
+        textView = null;
+        scrollView = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled.set(false);
+
+        if(textView == null && binder != null)
+            binder.run();
+
+        String chunk;
+        synchronized (lock){
+            if(pending.length() == 0)
+                return;
+            chunk = pending.toString();
+            pending.setLength(0);
+        }
+
+        boolean pinned = scrollView == null || !scrollView.canScrollVertically(1);
+
+        Editable target = null;
+        if(textView != null){
+            CharSequence text = textView.getText();
+            if(text instanceof Editable){
+                target = (Editable) text;
+            } else {
+                //The text was replaced, e.g. by setMessage()
+                textView = null;
+                scrollView = null;
+            }
+        }
+
+        buffer.append(chunk);
+        if(target != null)
+            target.append(chunk);
+        lineCount += count(chunk, 0, chunk.length());
+
+        int trim = trimLength();
+        if(trim > 0){
+            buffer.delete(0, trim);
+            if(target != null)
+                target.delete(0, trim);
+        }
+
+        if(pinned && scrollView != null){
+            scrollView.removeCallbacks(scrollToBottom);
+            scrollView.post(scrollToBottom);
+        }
+    }
+
+    //Returns how many chars from the start have to be removed to fit the limits.
+    private int trimLength(){
+        int start = 0;
+        while (lineCount >= maxLines){
+            int newLine = TextUtils.indexOf(buffer, '\n', start);
+            if(newLine < 0)
+                break;
+            start = newLine + 1;
+            lineCount--;
+        }
+        if(buffer.length() - start > maxChars){
+            int newStart = buffer.length() - maxChars;
+            lineCount -= count(buffer, start, newStart);
+            start = newStart;
+        }
+        return start;
+    }
+
+    private void scrollToBottom(){
+        if(!(scrollView instanceof ViewGroup) || ((ViewGroup) scrollView).getChildCount() == 0)
+            return;
+        View child = ((ViewGroup) scrollView).getChildAt(0);
+        int bottom = child.getBottom() + scrollView.getPaddingBottom() - scrollView.getHeight();
+        if(bottom > 0)
+            scrollView.scrollTo(0, bottom);
+    }
+
+    private static int count(CharSequence text, int start, int end){
+        int count = 0;
+        for(int i = start; i < end; i++){
+            if(text.charAt(i) == '\n')
+                count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.fivesoft.dialog;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queue of dialog changes made on background threads. Changes are added
+ * without locking and applied in order, all together, on the next frame
+ * of the main thread.
+ */
+
+final class MutationQueue implements Choreographer.FrameCallback {
+
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Runnable beforeBatch;
+    private final Runnable afterBatch;
+
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(this);
+
+    /**
+     * @param beforeBatch called on the main thread before the queued changes are applied.
+     * @param afterBatch called on the main thread after the queued changes are applied.
+     */
+
+    MutationQueue(Runnable beforeBatch, Runnable afterBatch){
+        this.beforeBatch = beforeBatch;
+        this.afterBatch = afterBatch;
+    }
+
+    /**
+     * Queues the change. Can be called from any thread.
+     */
+
+    void add(Runnable mutation){
+        queue.add(mutation);
+        if(scheduled.compareAndSet(false, true))
+            DialogExecutors.main().post(scheduleFrame);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled.set(false);
+        beforeBatch.run();
+        try {
+            Runnable mutation;
+            while ((mutation = queue.poll()) != null){
+                try {
+                    mutation.run();
+                } catch (Exception e){
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            afterBatch.run();
+        }
+    }
+
+}
@@ -1,37 +1,69 @@
 package com.fivesoft.dialog;
 
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
+import android.animation.TimeInterpolator;
 import android.app.Activity;
+import android.app.Application;
 import android.app.Dialog;
+import android.content.Context;
 import android.content.DialogInterface;
+import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.PorterDuff;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.method.LinkMovementMethod;
 import android.text.util.Linkify;
 import android.view.Gravity;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.Window;
-import android.view.animation.AccelerateDecelerateInterpolator;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import androidx.activity.ComponentActivity;
+import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.IdRes;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
-import androidx.core.content.ContextCompat;
-import com.fivesoft.smartutil.Metrics;
-import com.fivesoft.smartutil.Screen;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.swiperefreshlayout.widget.CircularProgressDrawable;
 import com.fivesoft.smartutil.ViewUtil;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static android.view.View.GONE;
 import static android.view.View.VISIBLE;
 import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
 
+/**
+ * Builds and shows the dialog. All setters and {@link #show()} can be called
+ * on any thread: on the main thread they're applied at once, on other threads
+ * they're queued and applied together, in order, on the next frame.
+ * Getters returning views must be called on the main thread.
+ */
+
 public class VTDialog {
 
     private final Activity activity;
@@ -49,18 +81,41 @@ public class VTDialog {
     private String title = "";
     private String message = "";
     private View contentView;
+    private DialogList list;
+    private MessageStream messageStream;
+    private DialogProgress progress;
 
     private boolean dismissOnButtonClick = true;
     private boolean cancelable = true;
     private Drawable dialogIcon;
-    private final Dialog dialog;
+    private int dialogIconRes = 0;
+    //Uri, File or Bitmap loaded in the background
+    private Object dialogIconSource;
+    private int iconGeneration = 0;
+    private Dialog dialog;
+    private OverlayHost overlay;
+    private View layoutView;
+    private DialogInterface.OnCancelListener onCancelListener;
+    private DialogInterface.OnShowListener onShowListener;
     private boolean enabledLinkify = false;
     private TextView dialTitle;
     private TextView dialMessage;
+    private ImageView dialIcon;
+    private CardView background;
+    private LinearLayout content;
     private LinearLayout root;
     private boolean messageSingleLine = false;
     private boolean titleSingleLine = false;
     private boolean buttonIconAutoColor = true;
+    private int textPrecomputeMode = TEXT_PRECOMPUTE_OFF;
+
+    //Background text preparation
+    private boolean titleNeedsPreparation = false;
+    private boolean messageNeedsPreparation = false;
+    private int titleTextGeneration = 0;
+    private int messageTextGeneration = 0;
+    private int pendingTexts = 0;
+    private boolean showWhenTextReady = false;
 
     private int paddingLeft = 8;
     private int paddingRight = 8;
@@ -71,11 +126,77 @@ public class VTDialog {
 
 
     private int buttonsStyle;
+    private boolean flatLayout = true;
 
     private DialogCustomization dialogCustomization = new DialogCustomization();
+    private VTDialogTheme theme;
+    private final ButtonsTransition buttonsTransition = new ButtonsTransition();
+    private int windowAnimationMode = WINDOW_ANIMATION_WINDOW;
+    private CardTransition cardTransition;
+    private CardSwipe cardSwipe;
+    //The card was swiped out of the screen, so it's dismissed without the exit animation
+    private boolean swipedOut = false;
+    private long cardEnterDuration = 200;
+    private long cardExitDuration = 150;
+    private OnAnimationFramesListener onAnimationFramesListener;
+
+    //Metrics
+    private static volatile DialogMetrics.Listener defaultMetricsListener;
+    private DialogMetrics.Listener metricsListener;
+    private DialogMetrics currentMetrics;
+    private long showStartNanos;
+    private boolean waitingForFirstDraw = false;
+
+    private DialogInterface.OnDismissListener onDismissListener;
+    private boolean lifecycleObserved = false;
+    private boolean released = false;
+    private final ArrayList<DialogInterface.OnDismissListener> internalDismissListeners = new ArrayList<>();
+
+    //Changes made on background threads, applied together on the main thread
+    private final MutationQueue mutations = new MutationQueue(this::beginBatch, this::endBatch);
+    private boolean batching = false;
+
+    //Async button task
+    private Button runningTask;
+    private TextView busyButtonView;
+    private Drawable busyButtonIcon;
+    private CircularProgressDrawable busyIndicator;
+
+    //Rebind state. Views built by the last createDialog() are reused on next show()
+    //as long as dialog mode and buttons style are unchanged.
+    private boolean built = false;
+    private int builtDialogMode;
+    private int builtButtonsStyle;
+    private boolean builtFlatLayout;
+    private VTDialogTheme builtTheme;
+    private int dirty = DIRTY_ALL;
+    private final int[] paddingPx = new int[4];
+    private boolean paddingPxResolved = false;
+    private DisplayEnvironment environment;
+
+    private static final int DIRTY_TITLE = 1;
+    private static final int DIRTY_MESSAGE = 1 << 1;
+    private static final int DIRTY_LEFT_BUTTON = 1 << 2;
+    private static final int DIRTY_CENTRAL_BUTTON = 1 << 3;
+    private static final int DIRTY_RIGHT_BUTTON = 1 << 4;
+    private static final int DIRTY_ICON = 1 << 5;
+    private static final int DIRTY_PADDING = 1 << 6;
+    private static final int DIRTY_GRAVITY = 1 << 7;
+    private static final int DIRTY_CONTENT = 1 << 8;
+    private static final int DIRTY_CUSTOMIZATION = 1 << 9;
+    private static final int DIRTY_LIST = 1 << 10;
+    private static final int DIRTY_THEME = 1 << 11;
+    private static final int DIRTY_BUTTONS = DIRTY_LEFT_BUTTON | DIRTY_CENTRAL_BUTTON | DIRTY_RIGHT_BUTTON;
+    private static final int DIRTY_ALL = 0xFFFFFFFF;
 
     public static final int DIALOG_MODE_NORMAL = 0;
     public static final int DIALOG_MODE_FULLSCREEN = 1;
+    public static final int DIALOG_MODE_OVERLAY = 2;
+
+    private static final long ICON_FADE_DURATION = 150;
+
+    //Dims the activity behind an overlay dialog, like the window dim does
+    private static final int OVERLAY_SCRIM_COLOR = 0x99000000;
 
     public static final int BUTTON_ID_LEFT = 0;
     public static final int BUTTON_ID_CENTRAL = 1;
@@ -85,9 +206,20 @@ public class VTDialog {
     public static final int BUTTONS_STYLE_HORIZONTAL = 0;
     public static final int BUTTONS_STYLE_VERTICAL = 1;
 
+    public static final int WINDOW_ANIMATION_WINDOW = 0;
+    public static final int WINDOW_ANIMATION_CARD = 1;
+
+    public static final int TEXT_PRECOMPUTE_OFF = 0;
+    public static final int TEXT_PRECOMPUTE_WAIT = 1;
+    public static final int TEXT_PRECOMPUTE_PLACEHOLDER = 2;
+
+    /**
+     * Creates the dialog. Can be called on any thread, the dialog window
+     * is created on the main thread when it's needed.
+     */
+
     private VTDialog(Activity activity){
         this.activity = activity;
-        dialog = new Dialog(activity);
     }
 
     /**
@@ -100,6 +232,128 @@ public class VTDialog {
         return new VTDialog(activity);
     }
 
+    /**
+     * Creates new VTDialog instance with the state captured by {@link #toSpec()}.
+     * The state is copied directly, so no builder calls are needed.
+     * @param activity the running activity.
+     * @param spec the saved dialog state.
+     * @param listener called when one of the buttons is clicked, may be null.
+     * @return new VTDialog instance.
+     */
+
+    public static VTDialog from(Activity activity, @NonNull VTDialogSpec spec, OnButtonClickListener listener){
+        VTDialog vtDialog = new VTDialog(activity);
+        vtDialog.title = spec.title;
+        vtDialog.message = spec.message;
+        vtDialog.dialogMode = spec.dialogMode;
+        vtDialog.buttonsStyle = spec.buttonsStyle;
+        vtDialog.flatLayout = spec.flatLayout;
+        vtDialog.gravity = spec.gravity;
+        vtDialog.paddingLeft = spec.padding[0];
+        vtDialog.paddingTop = spec.padding[1];
+        vtDialog.paddingRight = spec.padding[2];
+        vtDialog.paddingBottom = spec.padding[3];
+        vtDialog.dialogIconRes = spec.dialogIconRes;
+        vtDialog.titleSingleLine = spec.titleSingleLine;
+        vtDialog.messageSingleLine = spec.messageSingleLine;
+        vtDialog.enabledLinkify = spec.enabledLinkify;
+        vtDialog.dismissOnButtonClick = spec.dismissOnButtonClick;
+        vtDialog.buttonIconAutoColor = spec.buttonIconAutoColor;
+        vtDialog.textPrecomputeMode = spec.textPrecomputeMode;
+        vtDialog.windowAnimationMode = spec.windowAnimationMode;
+        vtDialog.setCancelable(spec.cancelable);
+        vtDialog.leftButton = restoreButton(vtDialog, spec, BUTTON_ID_LEFT, listener);
+        vtDialog.centralButton = restoreButton(vtDialog, spec, BUTTON_ID_CENTRAL, listener);
+        vtDialog.rightButton = restoreButton(vtDialog, spec, BUTTON_ID_RIGHT, listener);
+        return vtDialog;
+    }
+
+    /**
+     * Creates new VTDialog instance with the properties of the template.
+     * Values already resolved by the template, like paddings in px, are reused.
+     * @param activity the running activity.
+     * @param template the template.
+     * @return new VTDialog instance.
+     */
+
+    public static VTDialog from(Activity activity, @NonNull VTDialogTemplate template){
+        VTDialog vtDialog = new VTDialog(activity);
+        vtDialog.dialogMode = template.dialogMode;
+        vtDialog.buttonsStyle = template.buttonsStyle;
+        vtDialog.flatLayout = template.flatLayout;
+        vtDialog.gravity = template.gravity;
+        vtDialog.paddingLeft = template.paddingLeft;
+        vtDialog.paddingTop = template.paddingTop;
+        vtDialog.paddingRight = template.paddingRight;
+        vtDialog.paddingBottom = template.paddingBottom;
+        //The display values are read on the main thread, elsewhere the paddings are converted when bound
+        if(DialogExecutors.isMainThread()){
+            System.arraycopy(template.getPaddingPx(activity), 0, vtDialog.paddingPx, 0, 4);
+            vtDialog.paddingPxResolved = true;
+        }
+        vtDialog.dialogIconRes = template.dialogIconRes;
+        vtDialog.titleSingleLine = template.titleSingleLine;
+        vtDialog.messageSingleLine = template.messageSingleLine;
+        vtDialog.enabledLinkify = template.enabledLinkify;
+        vtDialog.dismissOnButtonClick = template.dismissOnButtonClick;
+        vtDialog.buttonIconAutoColor = template.buttonIconAutoColor;
+        vtDialog.textPrecomputeMode = template.textPrecomputeMode;
+        vtDialog.windowAnimationMode = template.windowAnimationMode;
+        vtDialog.cardEnterDuration = template.cardEnterDuration;
+        vtDialog.cardExitDuration = template.cardExitDuration;
+        if(template.dialogCustomization != null)
+            vtDialog.dialogCustomization = template.dialogCustomization;
+        vtDialog.theme = template.theme;
+        vtDialog.setCancelable(template.cancelable);
+        return vtDialog;
+    }
+
+    /**
+     * Inflates the dialog layout for given mode and buttons style
+     * in the background (when the main thread is idle), so next {@link #show()}
+     * doesn't have to inflate it. Call it on the main thread, e.g. in onCreate().
+     * @param activity the running activity.
+     * @param dialogMode dialog mode.
+     * @param buttonsStyle buttons style.
+     */
+
+    public static void prewarm(Activity activity, int dialogMode, int buttonsStyle){
+        prewarm(activity, dialogMode, buttonsStyle, 1);
+    }
+
+    /**
+     * Inflates the dialog layouts for given mode and buttons style
+     * in the background (when the main thread is idle).
+     * @param activity the running activity.
+     * @param dialogMode dialog mode.
+     * @param buttonsStyle buttons style.
+     * @param count number of layouts kept ready (max 2).
+     */
+
+    public static void prewarm(Activity activity, int dialogMode, int buttonsStyle, int count){
+        DialogLayoutPool.prewarm(activity, dialogMode, buttonsStyle, true, count);
+    }
+
+    /**
+     * Sets the listener receiving {@link DialogMetrics} of every dialog
+     * that has no own listener set with {@link #setMetricsListener(DialogMetrics.Listener)}.
+     * @param listener your listener or null.
+     */
+
+    public static void setDefaultMetricsListener(DialogMetrics.Listener listener){
+        defaultMetricsListener = listener;
+    }
+
+    /**
+     * Sets the executor used for the background work of all dialogs,
+     * e.g. text preparation. Pass null to use the default one.
+     * @param executor your executor.
+     */
+
+    public static void setBackgroundExecutor(Executor executor){
+        DialogExecutors.setBackground(executor);
+    }
+
     /**
      * Sets the left button. If you don't call this method
      * the left button will not be displayed.
@@ -142,26 +396,59 @@ public class VTDialog {
      */
 
     public VTDialog setLeftButton(String text, int iconRes, OnClickListener clickListener) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setLeftButton(text, iconRes, clickListener));
+            return this;
+        }
         Button newButton = new Button(text, iconRes, clickListener);
-        if(dialog.isShowing()){
+        if(applyNow()){
             setupButton(newButton, leftButtonView);
+        } else {
+            dirty |= DIRTY_LEFT_BUTTON;
         }
         leftButton = newButton;
         return this;
     }
 
     public VTDialog removeLeftButton(){
-        setupButton(null, leftButtonView);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(this::removeLeftButton);
+            return this;
+        }
+        leftButton = null;
+        if(applyNow()){
+            setupButton(null, leftButtonView);
+        } else {
+            dirty |= DIRTY_LEFT_BUTTON;
+        }
         return this;
     }
 
     public VTDialog removeCentralButton(){
-        setupButton(null, centerButtonView);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(this::removeCentralButton);
+            return this;
+        }
+        centralButton = null;
+        if(applyNow()){
+            setupButton(null, centerButtonView);
+        } else {
+            dirty |= DIRTY_CENTRAL_BUTTON;
+        }
         return this;
     }
 
     public VTDialog removeRightButton(){
-        setupButton(null, rightButtonView);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(this::removeRightButton);
+            return this;
+        }
+        rightButton = null;
+        if(applyNow()){
+            setupButton(null, rightButtonView);
+        } else {
+            dirty |= DIRTY_RIGHT_BUTTON;
+        }
         return this;
     }
 
@@ -174,9 +461,15 @@ public class VTDialog {
      */
 
     public VTDialog setCentralButton(String text, int iconRes, OnClickListener clickListener) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setCentralButton(text, iconRes, clickListener));
+            return this;
+        }
         Button newButton = new Button(text, iconRes, clickListener);
-        if(dialog.isShowing()){
+        if(applyNow()){
             setupButton(newButton, centerButtonView);
+        } else {
+            dirty |= DIRTY_CENTRAL_BUTTON;
         }
         centralButton = newButton;
         return this;
@@ -191,14 +484,70 @@ public class VTDialog {
      */
 
     public VTDialog setRightButton(String text, int iconRes, OnClickListener clickListener) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setRightButton(text, iconRes, clickListener));
+            return this;
+        }
         Button newButton = new Button(text, iconRes, clickListener);
-        if(dialog.isShowing()){
+        if(applyNow()){
             setupButton(newButton, rightButtonView);
+        } else {
+            dirty |= DIRTY_RIGHT_BUTTON;
         }
         rightButton = newButton;
         return this;
     }
 
+    /**
+     * Sets a button running the task on a background thread when clicked.
+     * While the task runs, the button shows a progress indicator, other buttons
+     * are disabled, the dialog can't be canceled and further clicks are ignored.
+     * When the task completes, the listener is called on the main thread and
+     * the dialog is dismissed (see {@link #setDismissOnButtonClick(boolean)}).
+     * When the task fails, the dialog stays open.
+     * @param buttonId {@link #BUTTON_ID_LEFT}, {@link #BUTTON_ID_CENTRAL} or {@link #BUTTON_ID_RIGHT}.
+     * @param text The text displayed on the button.
+     * @param iconRes Button icon resource id.
+     * @param task the work to do, e.g. saving or uploading.
+     * @param listener called when the task is done, may be null.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setAsyncButton(int buttonId, String text, int iconRes, Callable<?> task, OnButtonTaskListener listener) {
+        return setAsyncButton(buttonId, text, iconRes, null, task, listener);
+    }
+
+    /**
+     * Sets a button running the task with the executor when clicked.
+     * @param executor executor running the task, null to use the default one.
+     * @see #setAsyncButton(int, String, int, Callable, OnButtonTaskListener)
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setAsyncButton(int buttonId, String text, int iconRes, Executor executor, @NonNull Callable<?> task, OnButtonTaskListener listener) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setAsyncButton(buttonId, text, iconRes, executor, task, listener));
+            return this;
+        }
+        Button newButton = new Button(text, iconRes, null);
+        newButton.task = task;
+        newButton.executor = executor;
+        newButton.taskListener = listener;
+        TextView view = buttonId == BUTTON_ID_LEFT ? leftButtonView : buttonId == BUTTON_ID_CENTRAL ? centerButtonView : rightButtonView;
+        if(applyNow()){
+            setupButton(newButton, view);
+        } else {
+            dirty |= buttonId == BUTTON_ID_LEFT ? DIRTY_LEFT_BUTTON : buttonId == BUTTON_ID_CENTRAL ? DIRTY_CENTRAL_BUTTON : DIRTY_RIGHT_BUTTON;
+        }
+        if(buttonId == BUTTON_ID_LEFT)
+            leftButton = newButton;
+        else if(buttonId == BUTTON_ID_CENTRAL)
+            centralButton = newButton;
+        else
+            rightButton = newButton;
+        return this;
+    }
+
     /**
      * Sets the dialog title
      * @param title Dialog title displayed at the top.
@@ -206,9 +555,15 @@ public class VTDialog {
      */
 
     public VTDialog setTitle(String title) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setTitle(title));
+            return this;
+        }
         this.title = title;
-        if(dialTitle != null){
-            dialTitle.setText(title);
+        if(applyNow()){
+            setupTitle();
+        } else {
+            dirty |= DIRTY_TITLE;
         }
         return this;
     }
@@ -220,10 +575,117 @@ public class VTDialog {
      */
 
     public VTDialog setMessage(String message) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setMessage(message));
+            return this;
+        }
         this.message = message;
-        if(dialMessage != null){
-            dialMessage.setText(message);
+        if(messageStream != null)
+            messageStream.reset();
+        if(applyNow()){
+            setupMessage();
+        } else {
+            dirty |= DIRTY_MESSAGE;
+        }
+        return this;
+    }
+
+    /**
+     * Appends text to the dialog message. Can be called from any thread
+     * at any rate, the message is updated at most once per frame.
+     * When the message is scrolled to the bottom it stays there.
+     * The oldest text is dropped when the limits set with
+     * {@link #setMessageBufferLimits(int, int)} are exceeded.
+     * {@link #setMessage(String)} clears the appended text.
+     * @param text text to append, e.g. a log line with '\n' at the end.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog appendMessage(CharSequence text) {
+        getMessageStream().append(text);
+        if(DialogExecutors.isMainThread()){
+            markMessageDirty.run();
+        } else if(messageDirtyQueued.compareAndSet(false, true)){
+            //At most one queued change however fast the text comes
+            mutations.add(markMessageDirty);
+        }
+        return this;
+    }
+
+    private final AtomicBoolean messageDirtyQueued = new AtomicBoolean(false);
+
+    //A hidden dialog binds the stream on the next show().
+    private final Runnable markMessageDirty = () -> {
+        messageDirtyQueued.set(false);
+        if(!showing())
+            dirty |= DIRTY_MESSAGE;
+    };
+
+    /**
+     * Sets how much of the text added with {@link #appendMessage(CharSequence)} is kept.
+     * Defaults are 1000 lines and 65536 chars.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setMessageBufferLimits(int maxLines, int maxChars) {
+        getMessageStream().setLimits(maxLines, maxChars);
+        return this;
+    }
+
+    /**
+     * Displays a progress bar below the message. Can be called from any thread
+     * at any rate: only the latest value is kept and the bar is updated at most
+     * once per frame. Throughput and remaining time are displayed below the bar,
+     * see {@link #setProgressFormatter(ProgressFormatter)}.
+     * @param current the amount done.
+     * @param total the total amount, 0 or less for indeterminate progress.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setProgress(long current, long total) {
+        getProgress().set(current, total);
+        return this;
+    }
+
+    /**
+     * Sets the text displayed below the progress bar, e.g. the name of the current file.
+     * Can be called from any thread.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setProgressText(CharSequence text) {
+        getProgress().setText(text);
+        return this;
+    }
+
+    /**
+     * Sets how the progress stats line is built. It's called on the main thread
+     * a few times per second. Pass null to hide the stats.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setProgressFormatter(ProgressFormatter formatter) {
+        getProgress().setFormatter(formatter);
+        return this;
+    }
+
+    /**
+     * Removes the progress bar. Can be called on any thread.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog removeProgress() {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(this::removeProgress);
+            return this;
         }
+        DialogProgress progress;
+        synchronized (this){
+            progress = this.progress;
+            this.progress = null;
+        }
+        if(progress != null)
+            progress.unbind();
         return this;
     }
 
@@ -234,7 +696,14 @@ public class VTDialog {
      */
 
     public VTDialog setDialogIcon(Drawable dialogIcon) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setDialogIcon(dialogIcon));
+            return this;
+        }
         this.dialogIcon = dialogIcon;
+        this.dialogIconRes = 0;
+        this.dialogIconSource = null;
+        dirty |= DIRTY_ICON;
         return this;
     }
 
@@ -245,7 +714,59 @@ public class VTDialog {
      */
 
     public VTDialog setDialogIcon(int resId){
-        try { dialogIcon = ContextCompat.getDrawable(activity, resId); } catch (Exception e){ e.printStackTrace(); }
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setDialogIcon(resId));
+            return this;
+        }
+        dialogIcon = null;
+        dialogIconRes = resId;
+        dialogIconSource = null;
+        dirty |= DIRTY_ICON;
+        return this;
+    }
+
+    /**
+     * Sets the dialog icon from an image file, e.g. a cached download.
+     * The image is decoded in the background at about the icon size and
+     * faded in when it's ready, {@link #show()} doesn't wait for it.
+     * Decoded icons are cached in memory, see {@link IconCache#setMaxBitmapBytes(int)}.
+     * @param uri content, file or android.resource uri of the image.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setDialogIconUri(Uri uri){
+        return setDialogIconSource(uri);
+    }
+
+    /**
+     * Sets the dialog icon from an image file.
+     * @see #setDialogIconUri(Uri)
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setDialogIconFile(File file){
+        return setDialogIconSource(file);
+    }
+
+    /**
+     * Sets the dialog icon from a bitmap. A bitmap much bigger than the icon
+     * is scaled down in the background first.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setDialogIconBitmap(Bitmap bitmap){
+        return setDialogIconSource(bitmap);
+    }
+
+    private VTDialog setDialogIconSource(Object source){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setDialogIconSource(source));
+            return this;
+        }
+        dialogIcon = null;
+        dialogIconRes = 0;
+        dialogIconSource = source;
+        dirty |= DIRTY_ICON;
         return this;
     }
 
@@ -255,8 +776,13 @@ public class VTDialog {
      */
 
     public VTDialog setCancelable(boolean cancelable) {
-        dialog.setCancelable(cancelable);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setCancelable(cancelable));
+            return this;
+        }
         this.cancelable = cancelable;
+        if(dialog != null)
+            dialog.setCancelable(cancelable);
         return this;
     }
 
@@ -266,7 +792,12 @@ public class VTDialog {
      */
 
     public VTDialog setContentView(View contentView) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setContentView(contentView));
+            return this;
+        }
         this.contentView = contentView;
+        dirty |= DIRTY_CONTENT;
         return this;
     }
 
@@ -276,27 +807,166 @@ public class VTDialog {
      */
 
     public VTDialog setContentView(int resId){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setContentView(resId));
+            return this;
+        }
         try { contentView = activity.getLayoutInflater().inflate(resId, null); } catch (Exception e){ e.printStackTrace(); }
+        dirty |= DIRTY_CONTENT;
+        return this;
+    }
+
+    /**
+     * Displays a list of items instead of the message and content view.
+     * Only visible rows are created, so the list may be long.
+     * Clicking an item dismisses the dialog (see {@link #setDismissOnButtonClick(boolean)}).
+     * @param items the items, identified by their text.
+     * @param listener called when an item is clicked.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setItems(List<? extends CharSequence> items, OnItemClickListener listener){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setItems(items, listener));
+            return this;
+        }
+        return setList(items == null ? null : new DialogList(this, items, DialogList.CHOICE_MODE_NONE, listener));
+    }
+
+    /**
+     * Displays a list of items with a radio button instead of the message and content view.
+     * @param items the items, identified by their text.
+     * @param checkedItem index of the checked item or -1.
+     * @param listener called when an item is checked.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setSingleChoiceItems(List<? extends CharSequence> items, int checkedItem, OnItemClickListener listener){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setSingleChoiceItems(items, checkedItem, listener));
+            return this;
+        }
+        if(items == null)
+            return setList(null);
+        DialogList list = new DialogList(this, items, DialogList.CHOICE_MODE_SINGLE, listener);
+        if(checkedItem >= 0 && checkedItem < items.size())
+            list.setChecked(items.get(checkedItem), true);
+        return setList(list);
+    }
+
+    /**
+     * Displays a list of items with a check box instead of the message and content view.
+     * @param items the items, identified by their text.
+     * @param checkedItems checked state of the items or null.
+     * @param listener called when an item is checked or unchecked.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setMultiChoiceItems(List<? extends CharSequence> items, boolean[] checkedItems, OnItemClickListener listener){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setMultiChoiceItems(items, checkedItems, listener));
+            return this;
+        }
+        if(items == null)
+            return setList(null);
+        DialogList list = new DialogList(this, items, DialogList.CHOICE_MODE_MULTIPLE, listener);
+        if(checkedItems != null){
+            for(int i = 0; i < checkedItems.length && i < items.size(); i++)
+                list.setChecked(items.get(i), checkedItems[i]);
+        }
+        return setList(list);
+    }
+
+    /**
+     * Replaces the list items keeping the choice mode and checked items.
+     * When the dialog is showing, only changed rows are updated.
+     * @param items the new items.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog updateItems(List<? extends CharSequence> items){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> updateItems(items));
+            return this;
+        }
+        if(list != null)
+            list.setItems(items);
+        return this;
+    }
+
+    /**
+     * Displays only the list items containing the query (case insensitive).
+     * Filtering is done on a background thread.
+     * @param query the query, null or empty to show all items.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog filterItems(CharSequence query){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> filterItems(query));
+            return this;
+        }
+        if(list != null)
+            list.filter(query);
         return this;
     }
 
+    /**
+     * Returns the checked list items in the list order.
+     */
+
+    public List<CharSequence> getCheckedItems(){
+        return list == null ? new ArrayList<>() : list.getCheckedItems();
+    }
+
     /**
      * When you set to true, the dialog will be automatically
      * dismissed when user clicks one of the buttons.
      */
 
     public VTDialog setDismissOnButtonClick(boolean dismissOnButtonClick) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setDismissOnButtonClick(dismissOnButtonClick));
+            return this;
+        }
         this.dismissOnButtonClick = dismissOnButtonClick;
         return this;
     }
 
+    /**
+     * Sets how the title and message text is laid out.
+     * With {@link #TEXT_PRECOMPUTE_WAIT} or {@link #TEXT_PRECOMPUTE_PLACEHOLDER}
+     * the text is measured (and linkified) on a background thread using
+     * {@link PrecomputedTextCompat}, so the first frame doesn't pay for it.
+     * Useful for long messages. Texts displayed in a single line are not precomputed.
+     * @see #TEXT_PRECOMPUTE_OFF the text is set on the main thread (default).
+     * @see #TEXT_PRECOMPUTE_WAIT {@link #show()} shows the dialog once the text is ready.
+     * @see #TEXT_PRECOMPUTE_PLACEHOLDER the dialog is shown at once, the text appears when ready.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setTextPrecomputeMode(int textPrecomputeMode) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setTextPrecomputeMode(textPrecomputeMode));
+            return this;
+        }
+        this.textPrecomputeMode = textPrecomputeMode;
+        dirty |= DIRTY_TITLE | DIRTY_MESSAGE;
+        return this;
+    }
+
     /**
      * Makes the urls in the message clickable. User will simple can
      * open them in the browser.
      */
 
     public VTDialog setEnabledLinkify(boolean enabledLinkify) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setEnabledLinkify(enabledLinkify));
+            return this;
+        }
         this.enabledLinkify = enabledLinkify;
+        dirty |= DIRTY_MESSAGE;
         return this;
     }
 
@@ -305,7 +975,12 @@ public class VTDialog {
      */
 
     public VTDialog setTitleSingleLine(boolean titleSingleLine) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setTitleSingleLine(titleSingleLine));
+            return this;
+        }
         this.titleSingleLine = titleSingleLine;
+        dirty |= DIRTY_TITLE;
         return this;
     }
 
@@ -314,19 +989,31 @@ public class VTDialog {
      */
 
     public VTDialog setMessageSingleLine(boolean messageSingleLine) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setMessageSingleLine(messageSingleLine));
+            return this;
+        }
         this.messageSingleLine = messageSingleLine;
+        dirty |= DIRTY_MESSAGE;
         return this;
     }
 
     /**
      * Setups the dialog mode.
-     * There are 2 options available:
+     * There are 3 options available:
      * @see #DIALOG_MODE_NORMAL
      * @see #DIALOG_MODE_FULLSCREEN
+     * @see #DIALOG_MODE_OVERLAY the normal dialog drawn in the activity content view
+     * instead of its own window. Shows faster and uses less memory, but it's
+     * drawn below other windows of the activity, e.g. other dialogs.
      * @return current VTDialog instance.
      */
 
     public VTDialog setDialogMode(int dialogMode) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setDialogMode(dialogMode));
+            return this;
+        }
         this.dialogMode = dialogMode;
         return this;
     }
@@ -337,7 +1024,11 @@ public class VTDialog {
      */
 
     public VTDialog setOnDialogDismissListener(DialogInterface.OnDismissListener onDismissListener) {
-        dialog.setOnDismissListener(onDismissListener);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setOnDialogDismissListener(onDismissListener));
+            return this;
+        }
+        this.onDismissListener = onDismissListener;
         return this;
     }
 
@@ -347,7 +1038,13 @@ public class VTDialog {
      */
 
     public VTDialog setOnDialogCanceledListener(DialogInterface.OnCancelListener onCancelListener) {
-        dialog.setOnCancelListener(onCancelListener);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setOnDialogCanceledListener(onCancelListener));
+            return this;
+        }
+        this.onCancelListener = onCancelListener;
+        if(dialog != null)
+            dialog.setOnCancelListener(onCancelListener);
         return this;
     }
 
@@ -357,7 +1054,13 @@ public class VTDialog {
      */
 
     public VTDialog setOnDialogShowListener(DialogInterface.OnShowListener onShowListener) {
-        dialog.setOnShowListener(onShowListener);
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setOnDialogShowListener(onShowListener));
+            return this;
+        }
+        this.onShowListener = onShowListener;
+        if(dialog != null)
+            dialog.setOnShowListener(onShowListener);
         return this;
     }
 
@@ -371,73 +1074,267 @@ public class VTDialog {
      */
 
     public VTDialog setPadding(int left, int top, int right, int bottom){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setPadding(left, top, right, bottom));
+            return this;
+        }
         this.paddingLeft = left;
         this.paddingTop = top;
         this.paddingRight = right;
         this.paddingBottom = bottom;
+        paddingPxResolved = false;
+        dirty |= DIRTY_PADDING;
         return this;
     }
 
     public VTDialog setButtonsStyle(int buttonsStyle){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setButtonsStyle(buttonsStyle));
+            return this;
+        }
         this.buttonsStyle = buttonsStyle;
         return this;
     }
 
-    public VTDialog setButtonIconAutoColor(boolean buttonIconAutoColor) {
-        this.buttonIconAutoColor = buttonIconAutoColor;
-        return this;
-    }
+    /**
+     * When set to true (default) the normal mode dialog uses {@link VTDialogLayout},
+     * which measures the whole dialog in a single pass. Set to false to use
+     * the legacy nested layout.
+     * @return current VTDialog instance
+     */
 
-    public VTDialog customize(@NonNull DialogCustomization dialogCustomization){
-        this.dialogCustomization = dialogCustomization;
-        dialogCustomization.dialog = this;
+    public VTDialog setFlatLayout(boolean flatLayout) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setFlatLayout(flatLayout));
+            return this;
+        }
+        this.flatLayout = flatLayout;
         return this;
     }
 
     /**
-     * Sets gravity of the dialog.
-     * @param gravity dialog gravity. Check {@link Gravity}
+     * Sets duration of the animation played when a button is added
+     * or removed while the dialog is showing. Set 0 to disable it.
+     * Default is 250 ms.
      * @return current VTDialog instance
      */
 
-    public VTDialog setGravity(int gravity){
-        this.gravity = gravity;
+    public VTDialog setButtonsAnimationDuration(long duration) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setButtonsAnimationDuration(duration));
+            return this;
+        }
+        buttonsTransition.setDuration(duration);
         return this;
     }
 
     /**
-     * Shows the dialog.
+     * Sets interpolator of the animation played when a button is added
+     * or removed while the dialog is showing.
+     * @return current VTDialog instance
      */
 
-    public void show(){
-        createDialog();
-        dialog.show();
+    public VTDialog setButtonsAnimationInterpolator(@NonNull TimeInterpolator interpolator) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setButtonsAnimationInterpolator(interpolator));
+            return this;
+        }
+        buttonsTransition.setInterpolator(interpolator);
+        return this;
     }
 
     /**
-     * Closes the dialog.
+     * Sets how the dialog appears and disappears.
+     * @see #WINDOW_ANIMATION_WINDOW the whole window is animated (default).
+     * @see #WINDOW_ANIMATION_CARD the window appears instantly and only the dialog
+     * background is animated with property animators on a hardware layer.
+     * @return current VTDialog instance
      */
 
-    public void dismiss(){
-        dialog.dismiss();
+    public VTDialog setWindowAnimationMode(int windowAnimationMode) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setWindowAnimationMode(windowAnimationMode));
+            return this;
+        }
+        this.windowAnimationMode = windowAnimationMode;
+        return this;
     }
 
     /**
-     * Returns left button view.
-     * @return left button TextView.
+     * Sets durations of {@link #WINDOW_ANIMATION_CARD} animations.
+     * Defaults are 200 ms to enter and 150 ms to exit.
+     * @return current VTDialog instance
      */
 
-    public TextView getLeftButton(){
-        return leftButtonView;
+    public VTDialog setCardAnimationDuration(long enterDuration, long exitDuration) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setCardAnimationDuration(enterDuration, exitDuration));
+            return this;
+        }
+        this.cardEnterDuration = enterDuration;
+        this.cardExitDuration = exitDuration;
+        return this;
     }
 
     /**
-     * Returns center button view.
-     * @return center button TextView.
+     * Sets the listener notified how many frames were dropped during
+     * {@link #WINDOW_ANIMATION_CARD} enter and exit animations.
+     * @return current VTDialog instance
      */
 
-    public TextView getCentralButton(){
-        return centerButtonView;
+    public VTDialog setOnAnimationFramesListener(OnAnimationFramesListener onAnimationFramesListener) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setOnAnimationFramesListener(onAnimationFramesListener));
+            return this;
+        }
+        this.onAnimationFramesListener = onAnimationFramesListener;
+        return this;
+    }
+
+    /**
+     * Sets the listener receiving {@link DialogMetrics} of this dialog.
+     * Overrides the one set with {@link #setDefaultMetricsListener(DialogMetrics.Listener)}.
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setMetricsListener(DialogMetrics.Listener metricsListener) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setMetricsListener(metricsListener));
+            return this;
+        }
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    public VTDialog setButtonIconAutoColor(boolean buttonIconAutoColor) {
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setButtonIconAutoColor(buttonIconAutoColor));
+            return this;
+        }
+        this.buttonIconAutoColor = buttonIconAutoColor;
+        dirty |= DIRTY_BUTTONS;
+        return this;
+    }
+
+    /**
+     * Sets the look of the dialog. The theme can be shared by many dialogs,
+     * its values are resolved once per activity theme. Applied when the dialog
+     * is shown, before the {@link DialogCustomization}.
+     * @param theme the theme or null to use the look of the dialog layout.
+     * @return current VTDialog instance.
+     */
+
+    public VTDialog setTheme(VTDialogTheme theme){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setTheme(theme));
+            return this;
+        }
+        this.theme = theme;
+        dirty |= DIRTY_THEME;
+        return this;
+    }
+
+    public VTDialog customize(@NonNull DialogCustomization dialogCustomization){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> customize(dialogCustomization));
+            return this;
+        }
+        this.dialogCustomization = dialogCustomization;
+        dialogCustomization.dialog = this;
+        dirty |= DIRTY_CUSTOMIZATION;
+        return this;
+    }
+
+    /**
+     * Sets gravity of the dialog. A cancelable dialog with {@link Gravity#BOTTOM}
+     * can be dismissed by dragging it down, like a bottom sheet.
+     * @param gravity dialog gravity. Check {@link Gravity}
+     * @return current VTDialog instance
+     */
+
+    public VTDialog setGravity(int gravity){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(() -> setGravity(gravity));
+            return this;
+        }
+        this.gravity = gravity;
+        dirty |= DIRTY_GRAVITY;
+        return this;
+    }
+
+    /**
+     * Starts a set of changes applied together by {@link Editor#commit()}.
+     * When the dialog is showing, all of them are applied in one layout pass
+     * and animated with a single transition.
+     * @return new Editor of this dialog.
+     */
+
+    public Editor edit(){
+        return new Editor();
+    }
+
+    /**
+     * Shows the dialog. Can be called on any thread, off the main thread
+     * the dialog is shown on the next frame together with the changes
+     * made before.
+     */
+
+    public void show(){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(this::show);
+            return;
+        }
+        if(released || activity.isFinishing() || activity.isDestroyed())
+            return;
+        observeLifecycle();
+        //Theme values can't be taken back from the views, so a different theme needs a new layout
+        boolean rebind = built && builtDialogMode == dialogMode && builtButtonsStyle == buttonsStyle && builtFlatLayout == flatLayout
+                && (theme == null ? builtTheme == null : theme.equals(builtTheme));
+        if(!showing() && getMetricsListener() != null){
+            showStartNanos = System.nanoTime();
+            currentMetrics = new DialogMetrics(dialogMode, buttonsStyle, !rebind);
+        }
+        if(rebind){
+            bindDialog();
+        } else {
+            createDialog();
+        }
+        if(pendingTexts > 0 && textPrecomputeMode == TEXT_PRECOMPUTE_WAIT){
+            showWhenTextReady = true;
+            return;
+        }
+        showWindow();
+    }
+
+    /**
+     * Closes the dialog. Can be called on any thread.
+     */
+
+    public void dismiss(){
+        if(!DialogExecutors.isMainThread()){
+            mutations.add(this::dismiss);
+            return;
+        }
+        dropPendingShow();
+        hostDismiss();
+    }
+
+    /**
+     * Returns left button view.
+     * @return left button TextView.
+     */
+
+    public TextView getLeftButton(){
+        return leftButtonView;
+    }
+
+    /**
+     * Returns center button view.
+     * @return center button TextView.
+     */
+
+    public TextView getCentralButton(){
+        return centerButtonView;
     }
 
     /**
@@ -461,6 +1358,14 @@ public class VTDialog {
         return contentView;
     }
 
+    /**
+     * Returns the list view when items are set and the dialog was shown.
+     */
+
+    public RecyclerView getListView(){
+        return list == null ? null : list.getRecyclerView();
+    }
+
     public <T extends View> T findViewById(@IdRes int id){
         if(contentView == null)
             return null;
@@ -473,257 +1378,1585 @@ public class VTDialog {
      */
 
     public boolean isShowing(){
-        return dialog.isShowing();
+        return showing();
     }
 
+    /**
+     * Returns the dialog window. Main thread only.
+     * @return the window or null in {@link #DIALOG_MODE_OVERLAY}.
+     */
+
     public Window getWindow(){
-        return dialog.getWindow();
+        return isOverlay() ? null : window().getWindow();
     }
 
     public Activity getActivity(){
         return activity;
     }
 
-    //Private methods
+    /**
+     * Captures the dialog state that can be saved in a {@link android.os.Bundle}:
+     * texts, button texts and icons, mode, style, gravity, padding and flags.
+     * Click listeners, drawables set as objects, content view, list items and
+     * customization are not captured.
+     * @return the dialog spec.
+     * @see #from(Activity, VTDialogSpec, OnButtonClickListener)
+     */
 
-    private void createDialog(){
+    public VTDialogSpec toSpec(){
+        VTDialogSpec spec = new VTDialogSpec();
+        spec.title = title;
+        spec.message = message;
+        spec.dialogMode = dialogMode;
+        spec.buttonsStyle = buttonsStyle;
+        spec.flatLayout = flatLayout;
+        spec.gravity = gravity;
+        spec.padding[0] = paddingLeft;
+        spec.padding[1] = paddingTop;
+        spec.padding[2] = paddingRight;
+        spec.padding[3] = paddingBottom;
+        spec.dialogIconRes = dialogIconRes;
+        spec.titleSingleLine = titleSingleLine;
+        spec.messageSingleLine = messageSingleLine;
+        spec.enabledLinkify = enabledLinkify;
+        spec.cancelable = cancelable;
+        spec.dismissOnButtonClick = dismissOnButtonClick;
+        spec.buttonIconAutoColor = buttonIconAutoColor;
+        spec.textPrecomputeMode = textPrecomputeMode;
+        spec.windowAnimationMode = windowAnimationMode;
+        Button[] buttons = {leftButton, centralButton, rightButton};
+        for(int i = 0; i < buttons.length; i++){
+            if(buttons[i] != null){
+                spec.buttonTexts[i] = buttons[i].text;
+                spec.buttonIcons[i] = buttons[i].iconRes;
+            }
+        }
+        return spec;
+    }
 
-        dialog.getWindow().getAttributes().windowAnimations = R.style.DialogTheme;
-        dialog.getWindow().getAttributes().gravity = Gravity.NO_GRAVITY;
+    //Package-private methods
 
+    /**
+     * Adds a dismiss listener used by the library itself, called after
+     * the one set with {@link #setOnDialogDismissListener(DialogInterface.OnDismissListener)}.
+     */
 
-        if(dialogMode == DIALOG_MODE_NORMAL) {
-            dialog.setContentView(R.layout.d_vt_dialog_alert);
-            dialog.getWindow().setLayout(MATCH_PARENT, Screen.getAbsoluteHeight(activity) - Screen.getNavigationBarHeight(activity) - Screen.getStatusBarHeight(activity));
-            dialog.getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
-            root = dialog.findViewById(R.id.root);
-            root.setGravity(gravity);
-            root.setOnClickListener(v -> {
-                if(cancelable)
-                    dialog.dismiss();
-            });
-        } else if(dialogMode == DIALOG_MODE_FULLSCREEN){
-            dialog.setContentView(R.layout.d_vt_dialog_fullscreen);
+    void addInternalDismissListener(DialogInterface.OnDismissListener listener){
+        internalDismissListeners.add(listener);
+    }
 
-            dialog.getWindow().setStatusBarColor(Color.WHITE);
+    void removeInternalDismissListener(DialogInterface.OnDismissListener listener){
+        internalDismissListeners.remove(listener);
+    }
 
-            dialog.getWindow().setLayout(MATCH_PARENT, MATCH_PARENT);
-            dialog.getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
-        }
+    /**
+     * Returns true when {@link #show()} was called and the dialog waits for its texts to be measured.
+     */
 
-        dialTitle = dialog.findViewById(R.id.title);
-        dialMessage = dialog.findViewById(R.id.message);
+    boolean isShowPending(){
+        return showWhenTextReady;
+    }
 
-        ImageView icon = dialog.findViewById(R.id.icon);
+    /**
+     * Copies the content of the other dialog into this one.
+     * When this dialog is showing, the views are updated in place, so the
+     * dialog mode, buttons style, layout and theme of this dialog are kept.
+     * The list, progress and appended message of the other dialog are moved
+     * here, further changes made through the other dialog show up in this one.
+     */
 
-        CardView background = dialog.findViewById(R.id.background);
+    void updateFrom(VTDialog other){
+        leftButton = other.leftButton;
+        centralButton = other.centralButton;
+        rightButton = other.rightButton;
+        title = other.title;
+        message = other.message;
+        contentView = other.contentView;
+        dismissOnButtonClick = other.dismissOnButtonClick;
+        setCancelable(other.cancelable);
+        dialogIcon = other.dialogIcon;
+        dialogIconRes = other.dialogIconRes;
+        dialogIconSource = other.dialogIconSource;
+        enabledLinkify = other.enabledLinkify;
+        messageSingleLine = other.messageSingleLine;
+        titleSingleLine = other.titleSingleLine;
+        buttonIconAutoColor = other.buttonIconAutoColor;
+        paddingLeft = other.paddingLeft;
+        paddingTop = other.paddingTop;
+        paddingRight = other.paddingRight;
+        paddingBottom = other.paddingBottom;
+        paddingPxResolved = false;
+        gravity = other.gravity;
+        textPrecomputeMode = other.textPrecomputeMode;
+        windowAnimationMode = other.windowAnimationMode;
+        cardEnterDuration = other.cardEnterDuration;
+        cardExitDuration = other.cardExitDuration;
+
+        if(list != other.list){
+            if(other.list != null)
+                other.list.moveTo(this);
+            setList(other.list);
+        }
+        if(messageStream != other.messageStream){
+            if(messageStream != null)
+                messageStream.unbind();
+            messageStream = other.messageStream;
+            if(messageStream != null)
+                messageStream.setBinder(messageBinder);
+        }
+        if(progress != other.progress){
+            DialogProgress old;
+            synchronized (this){
+                old = progress;
+                progress = other.progress;
+            }
+            if(old != null)
+                old.unbind();
+            if(other.progress != null)
+                other.progress.setBinder(progressBinder);
+        }
 
-        background.setFocusable(true);
-        background.setClickable(true);
-        background.setOnClickListener(v -> {
+        int dirty = DIRTY_ALL & ~DIRTY_CUSTOMIZATION;
+        if(dialogCustomization != other.dialogCustomization){
+            dialogCustomization = other.dialogCustomization;
+            if(dialogCustomization != null)
+                dialogCustomization.dialog = this;
+            dirty |= DIRTY_CUSTOMIZATION;
+        }
+        this.dirty |= dirty;
 
-        });
+        if(showing())
+            bindDialog();
+    }
 
-        LinearLayout content = dialog.findViewById(R.id.content);
+    void onListItemClicked(){
+        if(dismissOnButtonClick)
+            hostDismiss();
+    }
 
-        LinearLayout buttonsBar = dialog.findViewById(R.id.buttonsBar);
+    //Private methods
 
-        View view;
+    /**
+     * Starts observing the activity, so the dialog is dismissed and its
+     * views released when the activity is destroyed.
+     */
 
-        if(buttonsStyle == BUTTONS_STYLE_HORIZONTAL){
-            view = activity.getLayoutInflater().inflate(R.layout.d_buttons_horizontal, buttonsBar, false);
+    private void observeLifecycle(){
+        if(lifecycleObserved)
+            return;
+        lifecycleObserved = true;
+        if(activity instanceof LifecycleOwner){
+            ((LifecycleOwner) activity).getLifecycle().addObserver(lifecycleObserver);
         } else {
-            view = activity.getLayoutInflater().inflate(R.layout.d_buttons_vertical, buttonsBar, false);
+            activity.getApplication().registerActivityLifecycleCallbacks(activityCallbacks);
         }
+    }
 
-        buttonsBar.removeAllViews();
-        buttonsBar.addView(view);
-
-        leftButtonView = view.findViewById(R.id.leftButton);
-        centerButtonView = view.findViewById(R.id.centerButton);
-        rightButtonView = view.findViewById(R.id.rightButton);
+    /**
+     * Stops observing the activity when the dialog is dismissed, so the activity
+     * doesn't keep every dialog it ever showed until it's destroyed.
+     */
 
-        setupTextView(this.title, dialTitle);
-        setupTextView(this.message, dialMessage);
+    private void stopObservingLifecycle(){
+        if(!lifecycleObserved)
+            return;
+        lifecycleObserved = false;
+        if(activity instanceof LifecycleOwner){
+            ((LifecycleOwner) activity).getLifecycle().removeObserver(lifecycleObserver);
+        } else {
+            activity.getApplication().unregisterActivityLifecycleCallbacks(activityCallbacks);
+        }
+    }
 
-        if (enabledLinkify) {
-            Linkify.addLinks(dialMessage, Linkify.WEB_URLS);
-            dialMessage.setLinksClickable(true);
+    private final LifecycleEventObserver lifecycleObserver = (source, event) -> {
+        if(event == Lifecycle.Event.ON_DESTROY){
+            source.getLifecycle().removeObserver(this.lifecycleObserver);
+            release();
+        }
+    };
+
+    private final Application.ActivityLifecycleCallbacks activityCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityDestroyed(@NonNull Activity destroyed) {
+            if(destroyed == activity){
+                activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+                release();
+            }
         }
 
-        dialTitle.setSingleLine(titleSingleLine);
-        dialMessage.setSingleLine(messageSingleLine);
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {}
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {}
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {}
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {}
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {}
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {}
+    };
 
-        setupButton(this.leftButton, leftButtonView);
-        setupButton(this.centralButton, centerButtonView);
-        setupButton(this.rightButton, rightButtonView);
+    /**
+     * Called when the activity is destroyed. Removes the window (so it isn't leaked),
+     * drops references to views and listeners that could keep the activity
+     * alive, and makes further {@link #show()} calls no-ops.
+     */
 
-        if (contentView != null) {
-            content.removeAllViewsInLayout();
-            content.addView(contentView);
+    private void release(){
+        released = true;
+        dropPendingShow();
+        iconGeneration++;
+        if(cardTransition != null)
+            cardTransition.cancel();
+        if(showing())
+            hostDismiss();
+        if(busyIndicator != null)
+            busyIndicator.stop();
+        if(cardSwipe != null)
+            cardSwipe.release();
+        busyButtonView = null;
+        busyButtonIcon = null;
+
+        for(View view : new View[]{leftButtonView, centerButtonView, rightButtonView, root, background}){
+            if(view != null)
+                view.setOnClickListener(null);
         }
+        if(content != null)
+            content.removeAllViews();
+
+        leftButtonView = centerButtonView = rightButtonView = null;
+        dialTitle = dialMessage = null;
+        dialIcon = null;
+        background = null;
+        content = null;
+        root = null;
+        layoutView = null;
+        contentView = null;
+        built = false;
+        dirty = DIRTY_ALL;
+
+        if(list != null)
+            list.detach();
+        if(messageStream != null)
+            messageStream.unbind();
+        if(progress != null)
+            progress.unbind();
+        //A customization shared by a template may be bound to another dialog by now
+        if(dialogCustomization != null && dialogCustomization.dialog == this)
+            dialogCustomization.dialog = null;
+        internalDismissListeners.clear();
+        currentMetrics = null;
+    }
 
-        setupIcon(dialogIcon, icon);
+    /**
+     * Returns the dialog window, creating it if needed. Main thread only.
+     */
 
-        if(dialogCustomization != null){
+    private Dialog window(){
+        if(dialog == null){
+            dialog = new DialogWindow(activity);
+            dialog.setOnDismissListener(this::onDismiss);
+            dialog.setOnCancelListener(onCancelListener);
+            dialog.setOnShowListener(onShowListener);
+            dialog.setCancelable(cancelable);
+        }
+        return dialog;
+    }
 
-            try {
+    /**
+     * Returns true when the dialog is (or will be) displayed without a window.
+     */
 
-                dialogCustomization.customizeTitleTextView(dialTitle);
-                dialogCustomization.customizeMessageTextView(dialMessage);
+    private boolean isOverlay(){
+        return built ? builtDialogMode == DIALOG_MODE_OVERLAY : dialogMode == DIALOG_MODE_OVERLAY;
+    }
 
-                dialogCustomization.customizeButtons(leftButtonView, 0);
-                dialogCustomization.customizeButtons(rightButtonView, 2);
-                dialogCustomization.customizeButtons(centerButtonView, 1);
+    private void hostCancel(){
+        if(overlay != null && overlay.isShowing())
+            overlay.cancel();
+        else if(dialog != null)
+            dialog.cancel();
+    }
 
-                dialogCustomization.customizeDialogIcon(icon);
+    private void hostDismiss(){
+        if(overlay != null && overlay.isShowing())
+            overlay.dismiss();
+        else if(dialog != null)
+            dialog.dismiss();
+    }
 
-                dialogCustomization.customizeDialogBackground(background);
+    //View observed for the first frame drawn.
+    private View hostView(){
+        return isOverlay() ? layoutView : window().getWindow().getDecorView();
+    }
 
-                dialogCustomization.customizeWindow(dialog.getWindow());
+    private DisplayEnvironment environment(){
+        if(environment == null)
+            environment = DisplayEnvironment.of(activity);
+        return environment;
+    }
 
-            } catch (Exception e){
-                e.printStackTrace();
-            }
+    /**
+     * Resizes the showing dialog when the activity window changes size,
+     * without creating the layout again.
+     */
+
+    private final DisplayEnvironment.Listener environmentListener = densityChanged -> {
+        if(!showing() || !built)
+            return;
+        if(builtDialogMode == DIALOG_MODE_NORMAL)
+            window().getWindow().setLayout(MATCH_PARENT, environment().getAvailableHeight());
+        if(densityChanged){
+            paddingPxResolved = false;
+            dirty |= DIRTY_PADDING | DIRTY_BUTTONS;
+            rebindShowing();
         }
+    };
 
-        background.setContentPadding(
-                Metrics.dpToPx(paddingLeft, activity),
-                Metrics.dpToPx(paddingTop, activity),
-                Metrics.dpToPx(paddingRight, activity),
-                Metrics.dpToPx(paddingBottom, activity));
+    private boolean showing(){
+        if(overlay != null && overlay.isShowing())
+            return true;
+        Dialog dialog = this.dialog;
+        return dialog != null && dialog.isShowing();
+    }
+
+    /**
+     * Returns true when a change should be applied to the views at once.
+     * False when the dialog is hidden or the change is part of a batch.
+     */
 
+    private boolean applyNow(){
+        return !batching && showing();
     }
 
-    private void setupTextView(String text, TextView textView){
-        if(text == null || text.equals("")){
-            textView.setVisibility(GONE);
-        }else{
-            textView.setText(text);
-        }
+    private void beginBatch(){
+        batching = true;
     }
 
-    private void setupButton(Button buttonData, TextView textView){
-        if(buttonData == null || buttonData.text == null || buttonData.text.equals("")){
-            if(dialog.isShowing() && textView.getVisibility() == VISIBLE) {
-                hideButton(textView);
-            } else {
-                textView.setVisibility(GONE);
-            }
-        } else {
-            textView.setText(buttonData.text);
-            ViewUtil.setMarginTop(textView, Metrics.dpToPx(8, activity));
-            dialogCustomization.customizeButtons(textView, textView.equals(leftButtonView) ? BUTTON_ID_LEFT : textView.equals(centerButtonView) ? BUTTON_ID_CENTRAL : BUTTON_ID_RIGHT);
-            textView.setOnClickListener(view -> {
-                if (buttonData.onClickListener != null)
-                    buttonData.onClickListener.onClick(textView);
-                if (dismissOnButtonClick) {
-                    dialog.dismiss();
-                }
-            });
-            if (buttonData.iconRes != 0) {
-                textView.setCompoundDrawablesWithIntrinsicBounds(buttonData.iconRes, 0, 0, 0);
-                if (buttonIconAutoColor) {
-                    textView.getCompoundDrawables()[0].setColorFilter(textView.getTextColors().getDefaultColor(), PorterDuff.Mode.SRC_IN);
-                }
-            }
-            if(dialog.isShowing() && textView.getVisibility() == GONE) {
-                showButton(textView);
-            } else {
-                textView.setVisibility(VISIBLE);
-            }
-        }
+    private void endBatch(){
+        batching = false;
+        rebindShowing();
     }
 
-    private void hideButton(TextView button){
+    /**
+     * Applies all pending changes to the showing dialog in one pass.
+     */
 
-        //TODO Animation for horizontal buttons style
-        if(buttonsStyle == BUTTONS_STYLE_HORIZONTAL){
-            button.setVisibility(GONE);
+    private void rebindShowing(){
+        if(!showing() || !built || released || dirty == 0)
             return;
+        //One transition for the whole diff, the buttons changed
+        //below join it instead of starting their own.
+        buttonsTransition.begin(getSceneRoot());
+        bindDialog();
+    }
+
+    private static Button restoreButton(VTDialog vtDialog, VTDialogSpec spec, int buttonId, OnButtonClickListener listener){
+        String text = spec.buttonTexts[buttonId];
+        if(text == null)
+            return null;
+        return new Button(text, spec.buttonIcons[buttonId], listener == null ? null : v -> listener.onButtonClick(vtDialog, buttonId));
+    }
+
+    private VTDialog setList(DialogList list){
+        if(this.list != null)
+            this.list.detach();
+        this.list = list;
+        if(applyNow()){
+            setupList();
+        } else {
+            dirty |= DIRTY_LIST;
         }
+        return this;
+    }
 
-        int viewHeight = ViewUtil.getViewHeight(button);
-        int viewStartMarginTop = ViewUtil.getMarginTop(button);
-        int viewEndMarginBottom = ViewUtil.getMarginBottom(button);
+    private void setupList(){
+        if(list != null){
+            list.attach(layoutView.findViewById(R.id.body));
+        }
+    }
 
-        ValueAnimator a = ValueAnimator.ofFloat(1, 0);
-        a.setDuration(250);
-        a.setInterpolator(new AccelerateDecelerateInterpolator());
-        a.addUpdateListener((animation) -> {
-            float factor = (float) animation.getAnimatedValue();
-            ViewUtil.setViewHeight(button, (int) (viewHeight * factor));
-            ViewUtil.setMarginTop(button, (int) (viewStartMarginTop * factor));
-            ViewUtil.setMarginBottom(button, (int) (viewEndMarginBottom * factor));
-        });
-        a.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(android.animation.Animator animation) {
-                button.setVisibility(View.GONE);
-            }
-        });
-        a.start();
+    private void showWindow(){
+        boolean animateCard = animatesCard();
+        boolean wasShowing = showing();
+        if(isOverlay()){
+            if(overlay == null)
+                overlay = new OverlayHost();
+            overlay.show(layoutView);
+        } else {
+            window().getWindow().getAttributes().windowAnimations = animateCard ? 0 : R.style.DialogTheme;
+            window().show();
+        }
+        if(!wasShowing)
+            environment().addListener(environmentListener);
+        if(currentMetrics != null && !wasShowing && !waitingForFirstDraw){
+            waitingForFirstDraw = true;
+            hostView().getViewTreeObserver().addOnDrawListener(firstDrawListener);
+        }
+        if(animateCard && !wasShowing){
+            CardTransition transition = getCardTransition();
+            transition.enter(background, this::onCardAnimationFrames);
+        }
     }
 
-    private void showButton(TextView button){
+    //Swipe to dismiss works for dialogs at the bottom, like a bottom sheet.
+    private final CardSwipe.Callback swipeCallback = new CardSwipe.Callback() {
 
-        //TODO Animation for horizontal buttons style
-        if(buttonsStyle == BUTTONS_STYLE_HORIZONTAL){
-            button.setVisibility(VISIBLE);
-            return;
+        @Override
+        public boolean canSwipe() {
+            return cancelable && runningTask == null && !released && root != null
+                    && (gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.BOTTOM;
         }
 
-        int viewHeight = ViewUtil.getViewHeight(button);
-        int viewStartMarginTop = ViewUtil.getMarginTop(button);
-        int viewEndMarginBottom = ViewUtil.getMarginBottom(button);
+        @Override
+        public void onSwiped() {
+            swipedOut = true;
+            hostCancel();
+        }
 
-        ValueAnimator a = ValueAnimator.ofFloat(0, 1);
-        a.setDuration(250);
-        a.setInterpolator(new AccelerateDecelerateInterpolator());
-        a.addUpdateListener((animation) -> {
-            float factor = (float) animation.getAnimatedValue();
-            ViewUtil.setViewHeight(button, (int) (viewHeight * factor));
-            ViewUtil.setMarginTop(button, (int) (viewStartMarginTop * factor));
-            ViewUtil.setMarginBottom(button, (int) (viewEndMarginBottom * factor));
-        });
-        a.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationStart(android.animation.Animator animation) {
-                button.setVisibility(View.VISIBLE);
-            }
-        });
-        a.start();
+    };
+
+    //The overlay has no window animation, so its card is always animated.
+    private boolean animatesCard(){
+        return windowAnimationMode == WINDOW_ANIMATION_CARD || isOverlay();
     }
 
-    private void setupIcon(Drawable drawable, ImageView icon){
-        if(drawable == null){
-            icon.setVisibility(GONE);
-        }else{
-            icon.setImageDrawable(drawable);
+    private CardTransition getCardTransition(){
+        if(cardTransition == null)
+            cardTransition = new CardTransition(activity.getWindowManager().getDefaultDisplay().getRefreshRate());
+        cardTransition.enterDuration = cardEnterDuration;
+        cardTransition.exitDuration = cardExitDuration;
+        return cardTransition;
+    }
+
+    private void onCardAnimationFrames(boolean enter, int frames, int droppedFrames, long durationMillis){
+        if(onAnimationFramesListener != null)
+            onAnimationFramesListener.onAnimationFrames(this, enter, frames, droppedFrames, durationMillis);
+        if(enter && currentMetrics != null){
+            currentMetrics.enterAnimationNanos = durationMillis * 1_000_000L;
+            currentMetrics.enterDroppedFrames = droppedFrames;
+            reportMetricsIfComplete();
         }
     }
 
-    private static class Button {
+    private DialogMetrics.Listener getMetricsListener(){
+        return metricsListener != null ? metricsListener : defaultMetricsListener;
+    }
 
-        public String text;
-        public int iconRes = 0;
-        public OnClickListener onClickListener;
+    private long now(){
+        return currentMetrics == null ? 0 : System.nanoTime();
+    }
 
-        private Button(String text, OnClickListener onClickListener){
-            this.text = text;
-            this.onClickListener = onClickListener;
+    private final ViewTreeObserver.OnDrawListener firstDrawListener = new ViewTreeObserver.OnDrawListener() {
+        @Override
+        public void onDraw() {
+            if(!waitingForFirstDraw)
+                return;
+            waitingForFirstDraw = false;
+            if(currentMetrics != null)
+                currentMetrics.showToFirstDrawNanos = System.nanoTime() - showStartNanos;
+            //Draw listeners can't be removed while dispatching onDraw()
+            DialogExecutors.main().post(() -> {
+                hostView().getViewTreeObserver().removeOnDrawListener(firstDrawListener);
+                reportMetricsIfComplete();
+            });
         }
+    };
 
-        private Button(String text, int iconRes, OnClickListener onClickListener){
-            this.text = text;
-            this.iconRes = iconRes;
-            this.onClickListener = onClickListener;
+    private void reportMetricsIfComplete(){
+        DialogMetrics metrics = currentMetrics;
+        if(metrics == null || metrics.showToFirstDrawNanos < 0)
+            return;
+        if(animatesCard() && metrics.enterAnimationNanos < 0 && showing())
+            return;
+        currentMetrics = null;
+        DialogMetrics.Listener listener = getMetricsListener();
+        if(listener != null){
+            try {
+                listener.onDialogMetrics(this, metrics);
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //A dialog dismissed while it waits for its texts never shows, so the internal listeners are told here.
+    private void dropPendingShow(){
+        if(!showWhenTextReady)
+            return;
+        showWhenTextReady = false;
+        if(showing())
+            return;
+        for(int i = internalDismissListeners.size() - 1; i >= 0; i--)
+            internalDismissListeners.get(i).onDismiss(null);
+    }
+
+    private void onDismiss(DialogInterface dialogInterface){
+        stopObservingLifecycle();
+        swipedOut = false;
+        if(cardSwipe != null)
+            cardSwipe.reset();
+        if(environment != null)
+            environment.removeListener(environmentListener);
+        reportMetricsIfComplete();
+        if(onDismissListener != null)
+            onDismissListener.onDismiss(dialogInterface);
+        for(int i = internalDismissListeners.size() - 1; i >= 0; i--)
+            internalDismissListeners.get(i).onDismiss(dialogInterface);
+    }
+
+    private void createDialog(){
+
+        //Switching between the overlay and the window
+        if(overlay != null && overlay.isShowing() && dialogMode != DIALOG_MODE_OVERLAY)
+            overlay.removeNow();
+
+        long start = now();
+        View layout = DialogLayoutPool.obtain(activity, dialogMode, buttonsStyle, flatLayout);
+        if(currentMetrics != null)
+            currentMetrics.inflateNanos = now() - start;
+        if(overlay != null && overlay.isShowing())
+            overlay.replace(layout);
+        layoutView = layout;
+
+        if(dialogMode != DIALOG_MODE_OVERLAY){
+            window().getWindow().getAttributes().gravity = Gravity.NO_GRAVITY;
+            window().setContentView(layout, layout.getLayoutParams());
+        }
+
+        if(dialogMode == DIALOG_MODE_NORMAL || dialogMode == DIALOG_MODE_OVERLAY) {
+            if(dialogMode == DIALOG_MODE_NORMAL){
+                window().getWindow().setLayout(MATCH_PARENT, environment().getAvailableHeight());
+                window().getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
+            } else {
+                layout.setBackgroundColor(OVERLAY_SCRIM_COLOR);
+            }
+            root = layout.findViewById(R.id.root);
+            root.setOnClickListener(v -> {
+                if(cancelable && runningTask == null)
+                    hostDismiss();
+            });
+        } else if(dialogMode == DIALOG_MODE_FULLSCREEN){
+            window().getWindow().setStatusBarColor(Color.WHITE);
+
+            window().getWindow().setLayout(MATCH_PARENT, MATCH_PARENT);
+            window().getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
+            root = null;
+        }
+
+        dialTitle = layout.findViewById(R.id.title);
+        dialMessage = layout.findViewById(R.id.message);
+
+        dialIcon = layout.findViewById(R.id.icon);
+
+        background = layout.findViewById(R.id.background);
+        if(cardSwipe == null)
+            cardSwipe = new CardSwipe(activity, swipeCallback);
+        cardSwipe.setCard(background);
+
+        background.setFocusable(true);
+        background.setClickable(true);
+        background.setOnClickListener(v -> {
+
+        });
+
+        content = layout.findViewById(R.id.content);
+
+        leftButtonView = layout.findViewById(R.id.leftButton);
+        centerButtonView = layout.findViewById(R.id.centerButton);
+        rightButtonView = layout.findViewById(R.id.rightButton);
+
+        built = true;
+        builtDialogMode = dialogMode;
+        builtButtonsStyle = buttonsStyle;
+        builtFlatLayout = flatLayout;
+        builtTheme = theme;
+
+        dirty = DIRTY_ALL;
+        bindDialog();
+    }
+
+    /**
+     * Applies the properties changed since the last bind to already created views.
+     */
+
+    private void bindDialog(){
+
+        int dirty = this.dirty;
+        this.dirty = 0;
+        //Buttons are customized when they're bound, so their icons are tinted with the customized text color
+        if(dialogCustomization != null && (dirty & DIRTY_CUSTOMIZATION) != 0)
+            dirty |= DIRTY_BUTTONS;
+
+        DialogMetrics metrics = currentMetrics;
+        long bindStart = now();
+        long start = bindStart;
+
+        if((dirty & DIRTY_GRAVITY) != 0 && root != null){
+            root.setGravity(gravity);
+        }
+
+        //Before the texts and buttons, which depend on text sizes and colors
+        if(theme != null && (dirty & DIRTY_THEME) != 0){
+            theme.apply(activity, background, dialTitle, dialMessage, leftButtonView, centerButtonView, rightButtonView);
+        }
+
+        if((dirty & DIRTY_TITLE) != 0){
+            setupTitle();
+        }
+
+        if((dirty & DIRTY_MESSAGE) != 0){
+            setupMessage();
+        }
+
+        if(metrics != null){
+            long time = now();
+            metrics.textNanos += time - start;
+            start = time;
+        }
+
+        if((dirty & DIRTY_LEFT_BUTTON) != 0)
+            setupButton(this.leftButton, leftButtonView);
+        if((dirty & DIRTY_CENTRAL_BUTTON) != 0)
+            setupButton(this.centralButton, centerButtonView);
+        if((dirty & DIRTY_RIGHT_BUTTON) != 0)
+            setupButton(this.rightButton, rightButtonView);
+
+        if(metrics != null){
+            long time = now();
+            metrics.buttonsNanos += time - start;
+            start = time;
+        }
+
+        if((dirty & DIRTY_CONTENT) != 0) {
+            content.removeAllViewsInLayout();
+            if (contentView != null) {
+                if(contentView.getParent() instanceof ViewGroup)
+                    ((ViewGroup) contentView.getParent()).removeView(contentView);
+                content.addView(contentView);
+            }
+        }
+
+        //Set from any thread, so it's checked on every bind
+        setupProgress();
+
+        if(metrics != null)
+            start = now();
+
+        if((dirty & DIRTY_LIST) != 0)
+            setupList();
+
+        if((dirty & DIRTY_ICON) != 0){
+            //Drops the result of a load still running
+            iconGeneration++;
+            if(dialogIconSource != null)
+                loadIcon(dialogIconSource);
+            else
+                setupIcon(dialogIconRes != 0 ? IconCache.get(activity, dialogIconRes, 0) : dialogIcon, dialIcon);
+        }
+
+        if(metrics != null){
+            long time = now();
+            metrics.iconNanos += time - start;
+            start = time;
+        }
+
+        if(dialogCustomization != null && (dirty & DIRTY_CUSTOMIZATION) != 0){
+
+            try {
+
+                //The customization may be shared by dialogs of a template
+                dialogCustomization.dialog = this;
+                dialogCustomization.customizeTitleTextView(dialTitle);
+                dialogCustomization.customizeMessageTextView(dialMessage);
+
+                dialogCustomization.customizeDialogIcon(dialIcon);
+
+                dialogCustomization.customizeDialogBackground(background);
+
+                if(!isOverlay())
+                    dialogCustomization.customizeWindow(window().getWindow());
+
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+        }
+
+        if(metrics != null)
+            metrics.customizationNanos += now() - start;
+
+        //Customization may change the content padding, so it's applied again after it.
+        if((dirty & (DIRTY_PADDING | DIRTY_CUSTOMIZATION)) != 0){
+            if((dirty & DIRTY_PADDING) != 0 && !paddingPxResolved) {
+                paddingPxResolved = true;
+                paddingPx[0] = environment().dpToPx(paddingLeft);
+                paddingPx[1] = environment().dpToPx(paddingTop);
+                paddingPx[2] = environment().dpToPx(paddingRight);
+                paddingPx[3] = environment().dpToPx(paddingBottom);
+            }
+            background.setContentPadding(paddingPx[0], paddingPx[1], paddingPx[2], paddingPx[3]);
+        }
+
+        prepareTexts();
+
+        if(metrics != null)
+            metrics.bindNanos += now() - bindStart;
+
+    }
+
+    private void setupTitle(){
+        if(isPrecomputed(title, titleSingleLine)){
+            dialTitle.setSingleLine(false);
+            dialTitle.setVisibility(VISIBLE);
+            titleNeedsPreparation = true;
+            if(showing())
+                prepareTexts();
+            return;
+        }
+        titleTextGeneration++;
+        setupTextView(this.title, dialTitle);
+        dialTitle.setSingleLine(titleSingleLine);
+    }
+
+    private final Runnable messageBinder = () -> {
+        if(showing() && dialMessage != null)
+            setupMessage();
+    };
+
+    private final Runnable progressBinder = () -> {
+        if(showing() && content != null)
+            setupProgress();
+    };
+
+    private synchronized MessageStream getMessageStream(){
+        if(messageStream == null){
+            messageStream = new MessageStream(messageBinder);
+            //Show the stream once the first chunk is applied
+            if(message != null && !message.equals(""))
+                messageStream.append(message);
+        }
+        return messageStream;
+    }
+
+    private synchronized DialogProgress getProgress(){
+        if(progress == null){
+            progress = new DialogProgress(progressBinder);
+        }
+        return progress;
+    }
+
+    private void setupProgress(){
+        DialogProgress progress = this.progress;
+        if(progress != null && !progress.isBoundTo(content))
+            progress.bind(content);
+    }
+
+    private void setupMessage(){
+        if(messageStream != null && messageStream.isActive()){
+            messageTextGeneration++;
+            messageStream.bind(dialMessage, layoutView.findViewById(R.id.body));
+            dialMessage.setSingleLine(false);
+            return;
+        }
+        if(isPrecomputed(message, messageSingleLine)){
+            dialMessage.setSingleLine(false);
+            dialMessage.setVisibility(VISIBLE);
+            messageNeedsPreparation = true;
+            if(showing())
+                prepareTexts();
+            return;
+        }
+        messageTextGeneration++;
+        setupTextView(this.message, dialMessage);
+
+        if (enabledLinkify) {
+            Linkify.addLinks(dialMessage, Linkify.WEB_URLS);
+            dialMessage.setLinksClickable(true);
+        }
+
+        dialMessage.setSingleLine(messageSingleLine);
+    }
+
+    private boolean isPrecomputed(String text, boolean singleLine){
+        return textPrecomputeMode != TEXT_PRECOMPUTE_OFF && !singleLine && text != null && !text.equals("");
+    }
+
+    /**
+     * Starts background preparation of the title and message marked by
+     * {@link #setupTitle()} and {@link #setupMessage()}. Called after
+     * customization, so the text metrics match the final TextView style.
+     */
+
+    private void prepareTexts(){
+        if(titleNeedsPreparation){
+            titleNeedsPreparation = false;
+            prepareText(dialTitle, title, false, true);
+        }
+        if(messageNeedsPreparation){
+            messageNeedsPreparation = false;
+            prepareText(dialMessage, message, enabledLinkify, false);
+        }
+    }
+
+    private void prepareText(TextView textView, String text, boolean linkify, boolean isTitle){
+        int generation = isTitle ? ++titleTextGeneration : ++messageTextGeneration;
+        PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(textView);
+        textView.setText("");
+        pendingTexts++;
+
+        DialogExecutors.background().execute(() -> {
+            Spannable spannable = new SpannableString(text);
+            PrecomputedTextCompat precomputed = null;
+            try {
+                if(linkify)
+                    Linkify.addLinks(spannable, Linkify.WEB_URLS);
+                precomputed = PrecomputedTextCompat.create(spannable, params);
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+            PrecomputedTextCompat result = precomputed;
+
+            DialogExecutors.main().post(() -> {
+                pendingTexts--;
+                if(generation == (isTitle ? titleTextGeneration : messageTextGeneration)){
+                    try {
+                        if(result != null)
+                            TextViewCompat.setPrecomputedText(textView, result);
+                        else
+                            textView.setText(spannable);
+                    } catch (Exception e){
+                        //Text style changed after preparation started
+                        textView.setText(spannable);
+                    }
+                    if(linkify){
+                        textView.setMovementMethod(LinkMovementMethod.getInstance());
+                        textView.setLinksClickable(true);
+                    }
+                }
+                if(pendingTexts == 0 && showWhenTextReady){
+                    showWhenTextReady = false;
+                    if(!activity.isFinishing())
+                        showWindow();
+                }
+            });
+        });
+    }
+
+    private void setupTextView(String text, TextView textView){
+        if(text == null || text.equals("")){
+            textView.setVisibility(GONE);
+        }else{
+            textView.setText(text);
+            textView.setVisibility(VISIBLE);
+        }
+    }
+
+    private void setupButton(Button buttonData, TextView textView){
+        if(buttonData == null || buttonData.text == null || buttonData.text.equals("")){
+            if(showing() && textView.getVisibility() == VISIBLE) {
+                hideButton(textView);
+            } else {
+                textView.setVisibility(GONE);
+            }
+        } else {
+            textView.setText(buttonData.text);
+            ViewUtil.setMarginTop(textView, environment().dpToPx(8));
+            textView.setOnClickListener(buttonClickListener);
+            customizeButton(textView);
+            textView.setCompoundDrawablesWithIntrinsicBounds(buttonIconAutoColor
+                    ? IconCache.getTinted(activity, buttonData.iconRes, textView.getTextColors().getDefaultColor(), 0)
+                    : IconCache.get(activity, buttonData.iconRes, 0), null, null, null);
+            if(showing() && textView.getVisibility() == GONE) {
+                showButton(textView);
+            } else {
+                textView.setVisibility(VISIBLE);
+            }
+        }
+    }
+
+    private void customizeButton(TextView textView){
+        if(dialogCustomization == null)
+            return;
+        try {
+            dialogCustomization.dialog = this;
+            dialogCustomization.customizeButtons(textView, textView == leftButtonView ? BUTTON_ID_LEFT
+                    : textView == centerButtonView ? BUTTON_ID_CENTRAL : BUTTON_ID_RIGHT);
+        } catch (Exception e){
+            e.printStackTrace();
+        }
+    }
+
+    //One listener for the three button views, so binding doesn't create a new one every time.
+    private final OnClickListener buttonClickListener = this::onButtonViewClicked;
+
+    private void onButtonViewClicked(View view){
+        Button buttonData = view == leftButtonView ? leftButton
+                : view == centerButtonView ? centralButton
+                : view == rightButtonView ? rightButton : null;
+        if (buttonData == null || runningTask != null)
+            return;
+        if (buttonData.task != null) {
+            runButtonTask(buttonData, (TextView) view);
+            return;
+        }
+        if (buttonData.onClickListener != null)
+            buttonData.onClickListener.onClick(view);
+        if (dismissOnButtonClick) {
+            hostDismiss();
+        }
+    }
+
+    private void runButtonTask(Button buttonData, TextView textView){
+        runningTask = buttonData;
+        int buttonId = textView == leftButtonView ? BUTTON_ID_LEFT : textView == centerButtonView ? BUTTON_ID_CENTRAL : BUTTON_ID_RIGHT;
+        setButtonsBusy(textView, true);
+
+        Callable<?> task = buttonData.task;
+        Executor executor = buttonData.executor != null ? buttonData.executor : DialogExecutors.background();
+        try {
+            executor.execute(() -> {
+                Object result = null;
+                Throwable error = null;
+                try {
+                    result = task.call();
+                } catch (Throwable e){
+                    error = e;
+                }
+                Object taskResult = result;
+                Throwable taskError = error;
+                DialogExecutors.main().post(() -> onButtonTaskDone(buttonData, buttonId, taskResult, taskError));
+            });
+        } catch (RejectedExecutionException e){
+            onButtonTaskDone(buttonData, buttonId, null, e);
+        }
+    }
+
+    private void onButtonTaskDone(Button buttonData, int buttonId, Object result, Throwable error){
+        if(runningTask != buttonData)
+            return;
+        runningTask = null;
+        if(released)
+            return;
+        setButtonsBusy(null, false);
+        if(buttonData.taskListener != null){
+            try {
+                buttonData.taskListener.onButtonTaskDone(this, buttonId, result, error);
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+        }
+        if(error == null && dismissOnButtonClick)
+            hostDismiss();
+    }
+
+    /**
+     * Shows the progress indicator on the clicked button and disables the others,
+     * or restores the buttons when busy is false.
+     */
+
+    private void setButtonsBusy(TextView clicked, boolean busy){
+        for(TextView button : new TextView[]{leftButtonView, centerButtonView, rightButtonView}){
+            if(button != null && button != clicked)
+                button.setEnabled(!busy);
+        }
+        if(dialog != null)
+            dialog.setCancelable(!busy && cancelable);
+
+        if(busy){
+            int size = clicked.getLineHeight();
+            if(busyIndicator == null){
+                busyIndicator = new CircularProgressDrawable(activity);
+                busyIndicator.setStrokeWidth(environment().dpToPx(2));
+            }
+            busyIndicator.setCenterRadius(size / 2f - busyIndicator.getStrokeWidth());
+            busyIndicator.setColorSchemeColors(clicked.getTextColors().getDefaultColor());
+            busyIndicator.setBounds(0, 0, size, size);
+            busyButtonView = clicked;
+            busyButtonIcon = clicked.getCompoundDrawables()[0];
+            clicked.setCompoundDrawables(busyIndicator, null, null, null);
+            busyIndicator.start();
+        } else if(busyButtonView != null){
+            busyIndicator.stop();
+            if(busyButtonView.getCompoundDrawables()[0] == busyIndicator)
+                busyButtonView.setCompoundDrawables(busyButtonIcon, null, null, null);
+            busyButtonView = null;
+            busyButtonIcon = null;
+        }
+    }
+
+    private void hideButton(TextView button){
+        buttonsTransition.begin(getSceneRoot());
+        button.setVisibility(GONE);
+    }
+
+    private void showButton(TextView button){
+        buttonsTransition.begin(getSceneRoot());
+        button.setVisibility(VISIBLE);
+    }
+
+    private ViewGroup getSceneRoot(){
+        return background == null ? null : (ViewGroup) background.getParent();
+    }
+
+    private void setupIcon(Drawable drawable, ImageView icon){
+        icon.animate().cancel();
+        icon.setAlpha(1f);
+        if(drawable == null){
+            icon.setVisibility(GONE);
+        }else{
+            icon.setImageDrawable(drawable);
+            icon.setVisibility(VISIBLE);
+        }
+    }
+
+    private void loadIcon(Object source){
+        ViewGroup.LayoutParams params = dialIcon.getLayoutParams();
+        int size = params != null && params.width > 0 ? params.width : environment().dpToPx(32);
+
+        Bitmap cached = IconLoader.getCached(source, size);
+        if(cached != null){
+            setupIcon(new BitmapDrawable(activity.getResources(), cached), dialIcon);
+            return;
+        }
+
+        //Keeps the space of the icon, so the title doesn't move when it's loaded
+        dialIcon.animate().cancel();
+        dialIcon.setImageDrawable(null);
+        dialIcon.setAlpha(0f);
+        dialIcon.setVisibility(VISIBLE);
+
+        int generation = iconGeneration;
+        IconLoader.load(activity, source, size, bitmap -> {
+            if(generation != iconGeneration || released || dialIcon == null)
+                return;
+            if(bitmap == null){
+                setupIcon(null, dialIcon);
+                return;
+            }
+            dialIcon.setImageDrawable(new BitmapDrawable(activity.getResources(), bitmap));
+            if(showing())
+                dialIcon.animate().alpha(1f).setDuration(ICON_FADE_DURATION).start();
+            else
+                dialIcon.setAlpha(1f);
+        });
+    }
+
+    /**
+     * Dialog that plays the {@link #WINDOW_ANIMATION_CARD} exit animation
+     * before its window is removed, whatever dismissed it (a button, back press,
+     * touch outside or {@link #dismiss()}).
+     */
+
+    private class DialogWindow extends Dialog {
+
+        private final CardSwipe.Target superDispatch = super::dispatchTouchEvent;
+
+        private DialogWindow(Activity activity){
+            super(activity);
+        }
+
+        @Override
+        public boolean dispatchTouchEvent(@NonNull MotionEvent ev) {
+            CardSwipe swipe = cardSwipe;
+            return swipe != null ? swipe.dispatchTouchEvent(ev, superDispatch) : super.dispatchTouchEvent(ev);
+        }
+
+        @Override
+        public void dismiss() {
+            if(windowAnimationMode == WINDOW_ANIMATION_CARD && !swipedOut && isShowing() && background != null
+                    && !released && !activity.isFinishing() && DialogExecutors.isMainThread()){
+                CardTransition transition = getCardTransition();
+                if(!transition.isExiting()){
+                    transition.exit(background, (enter, frames, droppedFrames, durationMillis) -> {
+                        onCardAnimationFrames(enter, frames, droppedFrames, durationMillis);
+                        dismissNow();
+                    });
+                }
+                return;
+            }
+            if(cardTransition != null)
+                cardTransition.cancel();
+            super.dismiss();
+        }
+
+        private void dismissNow(){
+            super.dismiss();
+        }
+
+    }
+
+    /**
+     * Displays the dialog layout in the activity content view for {@link #DIALOG_MODE_OVERLAY},
+     * so no window is added. Handles back press and plays the card animations
+     * like {@link DialogWindow} does.
+     */
+
+    private class OverlayHost implements DialogInterface {
+
+        private ViewGroup parent;
+        //Holds the layout, gets touch events first for the swipe gesture
+        private OverlayFrame frame;
+        private View view;
+        private boolean showing = false;
+        private OnBackPressedCallback backCallback;
+
+        private void show(View view){
+            if(showing)
+                return;
+            ViewGroup parent = activity.findViewById(android.R.id.content);
+            if(frame == null)
+                frame = new OverlayFrame(activity);
+            if(view.getParent() instanceof ViewGroup)
+                ((ViewGroup) view.getParent()).removeView(view);
+            frame.addView(view, new FrameLayout.LayoutParams(MATCH_PARENT, MATCH_PARENT));
+            parent.addView(frame, new FrameLayout.LayoutParams(MATCH_PARENT, MATCH_PARENT));
+            this.parent = parent;
+            this.view = view;
+            showing = true;
+
+            if(activity instanceof ComponentActivity){
+                if(backCallback == null){
+                    backCallback = new OnBackPressedCallback(true) {
+                        @Override
+                        public void handleOnBackPressed() {
+                            onBackPressed();
+                        }
+                    };
+                }
+                ((ComponentActivity) activity).getOnBackPressedDispatcher().addCallback((ComponentActivity) activity, backCallback);
+            } else {
+                //Without the dispatcher the overlay takes focus to get the back key
+                frame.setFocusableInTouchMode(true);
+                frame.setOnKeyListener(backKeyListener);
+                frame.requestFocus();
+            }
+
+            frame.setAlpha(0);
+            frame.animate().alpha(1).setDuration(cardEnterDuration).start();
+            if(onShowListener != null)
+                onShowListener.onShow(this);
+        }
+
+        private boolean isShowing(){
+            return showing;
+        }
+
+        //Puts a new layout in place of the displayed one.
+        private void replace(View layout){
+            if(!showing || view == layout)
+                return;
+            frame.removeView(view);
+            if(layout.getParent() instanceof ViewGroup)
+                ((ViewGroup) layout.getParent()).removeView(layout);
+            frame.addView(layout, new FrameLayout.LayoutParams(MATCH_PARENT, MATCH_PARENT));
+            view = layout;
+        }
+
+        private void onBackPressed(){
+            if(cancelable && runningTask == null)
+                cancel();
+        }
+
+        private final View.OnKeyListener backKeyListener = (v, keyCode, event) -> {
+            if(keyCode != KeyEvent.KEYCODE_BACK)
+                return false;
+            if(event.getAction() == KeyEvent.ACTION_UP && !event.isCanceled())
+                onBackPressed();
+            return true;
+        };
+
+        @Override
+        public void cancel() {
+            if(!showing)
+                return;
+            if(onCancelListener != null)
+                onCancelListener.onCancel(this);
+            dismiss();
+        }
+
+        @Override
+        public void dismiss() {
+            if(!showing)
+                return;
+            if(background != null && !swipedOut && !released && !activity.isFinishing() && DialogExecutors.isMainThread()){
+                CardTransition transition = getCardTransition();
+                if(!transition.isExiting()){
+                    frame.animate().alpha(0).setDuration(cardExitDuration).start();
+                    transition.exit(background, (enter, frames, droppedFrames, durationMillis) -> {
+                        onCardAnimationFrames(enter, frames, droppedFrames, durationMillis);
+                        removeNow();
+                    });
+                }
+                return;
+            }
+            if(cardTransition != null)
+                cardTransition.cancel();
+            removeNow();
+        }
+
+        private void removeNow(){
+            if(!showing)
+                return;
+            showing = false;
+            if(backCallback != null)
+                backCallback.remove();
+            frame.setOnKeyListener(null);
+            frame.animate().cancel();
+            frame.setAlpha(1);
+            frame.removeView(view);
+            parent.removeView(frame);
+            parent = null;
+            view = null;
+            onDismiss(this);
+        }
+
+    }
+
+    private class OverlayFrame extends FrameLayout {
+
+        private final CardSwipe.Target superDispatch = super::dispatchTouchEvent;
+
+        private OverlayFrame(Context context){
+            super(context);
+        }
+
+        @Override
+        public boolean dispatchTouchEvent(MotionEvent ev) {
+            CardSwipe swipe = cardSwipe;
+            return swipe != null ? swipe.dispatchTouchEvent(ev, superDispatch) : super.dispatchTouchEvent(ev);
+        }
+
+    }
+
+    /**
+     * Receives clicks on the list items.
+     * @see #setItems(List, OnItemClickListener)
+     */
+
+    public interface OnItemClickListener {
+
+        /**
+         * @param dialog the dialog.
+         * @param position index of the item in the items list.
+         * @param item the clicked item.
+         * @param checked whether the item is checked now, false when there's no choice mode.
+         */
+
+        void onItemClick(VTDialog dialog, int position, CharSequence item, boolean checked);
+
+    }
+
+    /**
+     * Receives clicks on the buttons of a dialog restored from {@link VTDialogSpec}.
+     * @see #from(Activity, VTDialogSpec, OnButtonClickListener)
+     */
+
+    public interface OnButtonClickListener {
+
+        /**
+         * @param dialog the dialog.
+         * @param buttonId {@link #BUTTON_ID_LEFT}, {@link #BUTTON_ID_CENTRAL} or {@link #BUTTON_ID_RIGHT}.
+         */
+
+        void onButtonClick(VTDialog dialog, int buttonId);
+
+    }
+
+    /**
+     * Receives results of the button tasks.
+     * @see #setAsyncButton(int, String, int, Callable, OnButtonTaskListener)
+     */
+
+    public interface OnButtonTaskListener {
+
+        /**
+         * Called on the main thread when the task is done.
+         * @param dialog the dialog.
+         * @param buttonId id of the clicked button.
+         * @param result value returned by the task, null when it failed.
+         * @param error exception thrown by the task, null when it succeeded.
+         */
+
+        void onButtonTaskDone(VTDialog dialog, int buttonId, Object result, Throwable error);
+
+    }
+
+    /**
+     * Builds the progress stats line.
+     * @see #setProgressFormatter(ProgressFormatter)
+     */
+
+    public interface ProgressFormatter {
+
+        /**
+         * @param current the amount done.
+         * @param total the total amount.
+         * @param perSecond average amount done per second, 0 when unknown.
+         * @param etaMillis estimated remaining time, -1 when unknown.
+         * @return the text displayed below the progress bar.
+         */
+
+        CharSequence format(long current, long total, double perSecond, long etaMillis);
+
+    }
+
+    /**
+     * Receives frame statistics of {@link #WINDOW_ANIMATION_CARD} animations.
+     */
+
+    public interface OnAnimationFramesListener {
+
+        /**
+         * @param dialog the animated dialog.
+         * @param enter true for the enter animation, false for the exit one.
+         * @param frames number of frames drawn during the animation.
+         * @param droppedFrames number of frames missed during the animation.
+         * @param durationMillis time between the first and the last frame.
+         */
+
+        void onAnimationFrames(VTDialog dialog, boolean enter, int frames, int droppedFrames, long durationMillis);
+
+    }
+
+    /**
+     * Collects changes of the dialog and applies them at once.
+     * Only the properties that differ from the current ones are updated.
+     * @see #edit()
+     */
+
+    public final class Editor {
+
+        private int changes = 0;
+        private String title;
+        private String message;
+        private final Button[] buttons = new Button[3];
+        private Drawable dialogIcon;
+        private int dialogIconRes;
+        private Object dialogIconSource;
+        private View contentView;
+        private int gravity;
+        private final int[] padding = new int[4];
+
+        private Editor(){}
+
+        public Editor setTitle(String title){
+            this.title = title;
+            changes |= DIRTY_TITLE;
+            return this;
+        }
+
+        public Editor setMessage(String message){
+            this.message = message;
+            changes |= DIRTY_MESSAGE;
+            return this;
+        }
+
+        public Editor setLeftButton(String text, int iconRes, OnClickListener clickListener){
+            return setButton(BUTTON_ID_LEFT, new Button(text, iconRes, clickListener));
+        }
+
+        public Editor setLeftButton(String text, OnClickListener clickListener){
+            return setLeftButton(text, 0, clickListener);
+        }
+
+        public Editor setCentralButton(String text, int iconRes, OnClickListener clickListener){
+            return setButton(BUTTON_ID_CENTRAL, new Button(text, iconRes, clickListener));
+        }
+
+        public Editor setCentralButton(String text, OnClickListener clickListener){
+            return setCentralButton(text, 0, clickListener);
+        }
+
+        public Editor setRightButton(String text, int iconRes, OnClickListener clickListener){
+            return setButton(BUTTON_ID_RIGHT, new Button(text, iconRes, clickListener));
+        }
+
+        public Editor setRightButton(String text, OnClickListener clickListener){
+            return setRightButton(text, 0, clickListener);
+        }
+
+        public Editor removeLeftButton(){
+            return setButton(BUTTON_ID_LEFT, null);
+        }
+
+        public Editor removeCentralButton(){
+            return setButton(BUTTON_ID_CENTRAL, null);
+        }
+
+        public Editor removeRightButton(){
+            return setButton(BUTTON_ID_RIGHT, null);
+        }
+
+        public Editor setDialogIcon(Drawable dialogIcon){
+            return setDialogIcon(dialogIcon, 0, null);
+        }
+
+        public Editor setDialogIcon(int resId){
+            return setDialogIcon(null, resId, null);
+        }
+
+        public Editor setDialogIconUri(Uri uri){
+            return setDialogIcon(null, 0, uri);
+        }
+
+        public Editor setDialogIconFile(File file){
+            return setDialogIcon(null, 0, file);
+        }
+
+        public Editor setDialogIconBitmap(Bitmap bitmap){
+            return setDialogIcon(null, 0, bitmap);
+        }
+
+        private Editor setDialogIcon(Drawable dialogIcon, int resId, Object source){
+            this.dialogIcon = dialogIcon;
+            this.dialogIconRes = resId;
+            this.dialogIconSource = source;
+            changes |= DIRTY_ICON;
+            return this;
+        }
+
+        public Editor setContentView(View contentView){
+            this.contentView = contentView;
+            changes |= DIRTY_CONTENT;
+            return this;
+        }
+
+        public Editor setGravity(int gravity){
+            this.gravity = gravity;
+            changes |= DIRTY_GRAVITY;
+            return this;
+        }
+
+        /**
+         * Sets the dialog padding in dp.
+         */
+
+        public Editor setPadding(int left, int top, int right, int bottom){
+            padding[0] = left;
+            padding[1] = top;
+            padding[2] = right;
+            padding[3] = bottom;
+            changes |= DIRTY_PADDING;
+            return this;
+        }
+
+        /**
+         * Applies the changes. When the dialog is showing, the views are updated
+         * in one pass, otherwise the changes are applied on the next {@link #show()}.
+         */
+
+        public void commit(){
+            if(!DialogExecutors.isMainThread()){
+                mutations.add(this::commit);
+                return;
+            }
+            int diff = 0;
+            if((changes & DIRTY_TITLE) != 0 && !equal(title, VTDialog.this.title)){
+                VTDialog.this.title = title;
+                diff |= DIRTY_TITLE;
+            }
+            if((changes & DIRTY_MESSAGE) != 0 && !equal(message, VTDialog.this.message)){
+                VTDialog.this.message = message;
+                if(messageStream != null)
+                    messageStream.reset();
+                diff |= DIRTY_MESSAGE;
+            }
+            if((changes & DIRTY_LEFT_BUTTON) != 0 && !Button.same(buttons[BUTTON_ID_LEFT], leftButton)){
+                leftButton = buttons[BUTTON_ID_LEFT];
+                diff |= DIRTY_LEFT_BUTTON;
+            }
+            if((changes & DIRTY_CENTRAL_BUTTON) != 0 && !Button.same(buttons[BUTTON_ID_CENTRAL], centralButton)){
+                centralButton = buttons[BUTTON_ID_CENTRAL];
+                diff |= DIRTY_CENTRAL_BUTTON;
+            }
+            if((changes & DIRTY_RIGHT_BUTTON) != 0 && !Button.same(buttons[BUTTON_ID_RIGHT], rightButton)){
+                rightButton = buttons[BUTTON_ID_RIGHT];
+                diff |= DIRTY_RIGHT_BUTTON;
+            }
+            if((changes & DIRTY_ICON) != 0 && (dialogIcon != VTDialog.this.dialogIcon || dialogIconRes != VTDialog.this.dialogIconRes
+                    || (dialogIconSource == null ? VTDialog.this.dialogIconSource != null : !dialogIconSource.equals(VTDialog.this.dialogIconSource)))){
+                VTDialog.this.dialogIcon = dialogIcon;
+                VTDialog.this.dialogIconRes = dialogIconRes;
+                VTDialog.this.dialogIconSource = dialogIconSource;
+                diff |= DIRTY_ICON;
+            }
+            if((changes & DIRTY_CONTENT) != 0 && contentView != VTDialog.this.contentView){
+                VTDialog.this.contentView = contentView;
+                diff |= DIRTY_CONTENT;
+            }
+            if((changes & DIRTY_GRAVITY) != 0 && gravity != VTDialog.this.gravity){
+                VTDialog.this.gravity = gravity;
+                diff |= DIRTY_GRAVITY;
+            }
+            if((changes & DIRTY_PADDING) != 0 && (padding[0] != paddingLeft || padding[1] != paddingTop
+                    || padding[2] != paddingRight || padding[3] != paddingBottom)){
+                paddingLeft = padding[0];
+                paddingTop = padding[1];
+                paddingRight = padding[2];
+                paddingBottom = padding[3];
+                paddingPxResolved = false;
+                diff |= DIRTY_PADDING;
+            }
+            changes = 0;
+
+            if(diff == 0)
+                return;
+            dirty |= diff;
+            if(!batching)
+                rebindShowing();
+        }
+
+        private Editor setButton(int buttonId, Button button){
+            buttons[buttonId] = button;
+            changes |= buttonId == BUTTON_ID_LEFT ? DIRTY_LEFT_BUTTON : buttonId == BUTTON_ID_CENTRAL ? DIRTY_CENTRAL_BUTTON : DIRTY_RIGHT_BUTTON;
+            return this;
+        }
+
+    }
+
+    private static boolean equal(String a, String b){
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class Button {
+
+        public String text;
+        public int iconRes = 0;
+        public OnClickListener onClickListener;
+        public Callable<?> task;
+        public Executor executor;
+        public OnButtonTaskListener taskListener;
+
+        private Button(String text, OnClickListener onClickListener){
+            this.text = text;
+            this.onClickListener = onClickListener;
+        }
+
+        private Button(String text, int iconRes, OnClickListener onClickListener){
+            this.text = text;
+            this.iconRes = iconRes;
+            this.onClickListener = onClickListener;
+        }
+
+        private static boolean same(Button a, Button b){
+            if(a == null || b == null)
+                return a == b;
+            return equal(a.text, b.text) && a.iconRes == b.iconRes && a.onClickListener == b.onClickListener
+                    && a.task == b.task && a.executor == b.executor && a.taskListener == b.taskListener;
         }
 
     }
 
     public static class DialogCustomization {
 
+        /**
+         * The dialog being customized. Set before the customize methods are called,
+         * only use it inside them: a customization shared by a {@link VTDialogTemplate}
+         * points to whichever dialog was bound last, and it's null after the dialog is released.
+         */
+
         protected VTDialog dialog;
 
         public void customizeTitleTextView(TextView title){
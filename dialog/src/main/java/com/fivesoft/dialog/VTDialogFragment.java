@@ -0,0 +1,172 @@
+package com.fivesoft.dialog;
+
+import android.content.DialogInterface;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+import androidx.fragment.app.FragmentManager;
+
+/**
+ * Headless fragment hosting a {@link VTDialog}, like {@code DialogFragment} does for
+ * a plain dialog. The dialog state is kept as a {@link VTDialogSpec}, taken again
+ * from the dialog when the fragment state is saved, so after a configuration change
+ * or process death the dialog is recreated directly from it, with the changes made
+ * through {@link #getDialog()}, and shown again when the fragment starts.
+ * <p>
+ * Button clicks are delivered by button id to the parent fragment or the activity
+ * implementing {@link Callbacks}, so they don't reference the destroyed activity.
+ * The fragment removes itself when the dialog is dismissed.
+ */
+
+public class VTDialogFragment extends Fragment {
+
+    private static final String ARG_SPEC = "vt_dialog_spec";
+
+    private VTDialog dialog;
+    //Spec of the dialog saved with the fragment state, null before the first save
+    private VTDialogSpec savedSpec;
+
+    /**
+     * Called with events of the hosted dialog. Implement it in the activity
+     * or the parent fragment.
+     */
+
+    public interface Callbacks {
+
+        /**
+         * @param tag tag passed to {@link #show(FragmentManager, VTDialog, String)}.
+         * @param buttonId {@link VTDialog#BUTTON_ID_LEFT}, {@link VTDialog#BUTTON_ID_CENTRAL} or {@link VTDialog#BUTTON_ID_RIGHT}.
+         */
+
+        void onDialogButtonClick(String tag, int buttonId);
+
+        /**
+         * Called every time the dialog is created, before it is shown.
+         * Set here what the spec can't hold, like the content view or customization.
+         */
+
+        default void onDialogCreated(String tag, VTDialog dialog){}
+
+    }
+
+    /**
+     * Shows the dialog in a new fragment. Only the state captured by
+     * {@link VTDialog#toSpec()} is used, clicks go to {@link Callbacks}.
+     * @param manager the fragment manager of the activity or the parent fragment.
+     * @param dialog the dialog to show.
+     * @param tag the fragment tag, passed to {@link Callbacks}.
+     * @return the hosting fragment.
+     */
+
+    public static VTDialogFragment show(@NonNull FragmentManager manager, @NonNull VTDialog dialog, String tag){
+        Bundle args = new Bundle();
+        args.putParcelable(ARG_SPEC, dialog.toSpec());
+        VTDialogFragment fragment = new VTDialogFragment();
+        fragment.setArguments(args);
+        manager.beginTransaction().add(fragment, tag).commit();
+        return fragment;
+    }
+
+    /**
+     * Returns the hosted dialog, null when the fragment is not started yet.
+     */
+
+    public VTDialog getDialog(){
+        return dialog;
+    }
+
+    /**
+     * Dismisses the dialog and removes the fragment.
+     */
+
+    public void dismiss(){
+        if(dialog != null && dialog.isShowing()){
+            dialog.dismiss();
+        } else {
+            remove();
+        }
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if(savedInstanceState != null)
+            savedSpec = savedInstanceState.getParcelable(ARG_SPEC);
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if(dialog != null)
+            savedSpec = dialog.toSpec();
+        if(savedSpec != null)
+            outState.putParcelable(ARG_SPEC, savedSpec);
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if(dialog == null)
+            dialog = createDialog();
+        if(dialog != null && !dialog.isShowing())
+            dialog.show();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        //The dialog releases itself with the activity
+        if(dialog != null)
+            dialog.removeInternalDismissListener(dismissListener);
+        dialog = null;
+    }
+
+    private VTDialog createDialog(){
+        FragmentActivity activity = getActivity();
+        VTDialogSpec spec = savedSpec != null ? savedSpec
+                : getArguments() == null ? null : getArguments().getParcelable(ARG_SPEC);
+        if(activity == null || spec == null){
+            remove();
+            return null;
+        }
+        VTDialog vtDialog = VTDialog.from(activity, spec, (d, buttonId) -> {
+            Callbacks callbacks = getCallbacks();
+            if(callbacks != null)
+                callbacks.onDialogButtonClick(getTag(), buttonId);
+        });
+        vtDialog.addInternalDismissListener(dismissListener);
+        Callbacks callbacks = getCallbacks();
+        if(callbacks != null){
+            try {
+                callbacks.onDialogCreated(getTag(), vtDialog);
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+        }
+        return vtDialog;
+    }
+
+    private Callbacks getCallbacks(){
+        if(getParentFragment() instanceof Callbacks)
+            return (Callbacks) getParentFragment();
+        if(getActivity() instanceof Callbacks)
+            return (Callbacks) getActivity();
+        return null;
+    }
+
+    private final DialogInterface.OnDismissListener dismissListener = dialogInterface -> {
+        //Dismissed with the activity, on recreation the dialog comes back in onStart()
+        FragmentActivity activity = getActivity();
+        if(activity == null || activity.isChangingConfigurations() || activity.isFinishing())
+            return;
+        remove();
+    };
+
+    private void remove(){
+        if(isAdded())
+            getParentFragmentManager().beginTransaction().remove(this).commitAllowingStateLoss();
+    }
+
+}
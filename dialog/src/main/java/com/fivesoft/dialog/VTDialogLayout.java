@@ -0,0 +1,265 @@
+package com.fivesoft.dialog;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Flat dialog layout. Positions the icon, title, body (message and content)
+ * and the three buttons in a single measure and layout pass, replacing
+ * the nested LinearLayouts and the weighted body of d_vt_dialog_alert.
+ * <p>
+ * Children are recognized by their ids: {@code icon}, {@code title}, {@code body},
+ * {@code leftButton}, {@code centerButton} and {@code rightButton}.
+ * Margins of the children are respected.
+ */
+
+public class VTDialogLayout extends ViewGroup {
+
+    private int buttonsStyle = VTDialog.BUTTONS_STYLE_HORIZONTAL;
+
+    private final int headerPadding;
+    private final int buttonsBarPadding;
+
+    private View icon, title, body;
+    private final View[] buttons = new View[3];
+
+    private int headerHeight;
+    private int buttonsBarHeight;
+
+    public VTDialogLayout(Context context) {
+        this(context, null);
+    }
+
+    public VTDialogLayout(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public VTDialogLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        float density = context.getResources().getDisplayMetrics().density;
+        headerPadding = (int) (8 * density + 0.5f);
+        buttonsBarPadding = (int) (8 * density + 0.5f);
+    }
+
+    /**
+     * Sets the buttons arrangement.
+     * @see VTDialog#BUTTONS_STYLE_HORIZONTAL
+     * @see VTDialog#BUTTONS_STYLE_VERTICAL
+     */
+
+    public void setButtonsStyle(int buttonsStyle) {
+        if(this.buttonsStyle != buttonsStyle) {
+            this.buttonsStyle = buttonsStyle;
+            requestLayout();
+        }
+    }
+
+    public int getButtonsStyle() {
+        return buttonsStyle;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        findChildren();
+
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+        int innerWidth = Math.max(0, width - getPaddingLeft() - getPaddingRight());
+
+        //Header: icon and title in a row
+        int headerInnerWidth = Math.max(0, innerWidth - 2 * headerPadding);
+        int iconSpace = 0;
+        headerHeight = 0;
+        if(isShown(icon)){
+            MarginLayoutParams lp = (MarginLayoutParams) icon.getLayoutParams();
+            icon.measure(
+                    getChildMeasureSpec(MeasureSpec.makeMeasureSpec(headerInnerWidth, MeasureSpec.AT_MOST), lp.leftMargin + lp.rightMargin, lp.width),
+                    getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), lp.topMargin + lp.bottomMargin, lp.height));
+            iconSpace = icon.getMeasuredWidth() + lp.leftMargin + lp.rightMargin;
+            headerHeight = icon.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+        }
+        if(isShown(title)){
+            MarginLayoutParams lp = (MarginLayoutParams) title.getLayoutParams();
+            title.measure(
+                    getChildMeasureSpec(MeasureSpec.makeMeasureSpec(Math.max(0, headerInnerWidth - iconSpace), MeasureSpec.AT_MOST), lp.leftMargin + lp.rightMargin, lp.width),
+                    getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), lp.topMargin + lp.bottomMargin, lp.height));
+            headerHeight = Math.max(headerHeight, title.getMeasuredHeight() + lp.topMargin + lp.bottomMargin);
+        }
+
+        //Buttons bar
+        buttonsBarHeight = 2 * buttonsBarPadding;
+        int barInnerWidth = Math.max(0, innerWidth - 2 * buttonsBarPadding);
+        if(buttonsStyle == VTDialog.BUTTONS_STYLE_HORIZONTAL){
+            int visible = 0;
+            int margins = 0;
+            for(View button : buttons){
+                if(isShown(button)){
+                    MarginLayoutParams lp = (MarginLayoutParams) button.getLayoutParams();
+                    visible++;
+                    margins += lp.leftMargin + lp.rightMargin;
+                }
+            }
+            int buttonWidth = visible == 0 ? 0 : Math.max(0, barInnerWidth - margins) / visible;
+            int rowHeight = 0;
+            for(View button : buttons){
+                if(isShown(button)){
+                    MarginLayoutParams lp = (MarginLayoutParams) button.getLayoutParams();
+                    button.measure(
+                            MeasureSpec.makeMeasureSpec(buttonWidth, MeasureSpec.EXACTLY),
+                            getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), 0, lp.height));
+                    rowHeight = Math.max(rowHeight, button.getMeasuredHeight() + lp.topMargin + lp.bottomMargin);
+                }
+            }
+            buttonsBarHeight += rowHeight;
+        } else {
+            for(View button : buttons){
+                if(isShown(button)){
+                    MarginLayoutParams lp = (MarginLayoutParams) button.getLayoutParams();
+                    button.measure(
+                            MeasureSpec.makeMeasureSpec(Math.max(0, barInnerWidth - lp.leftMargin - lp.rightMargin), MeasureSpec.EXACTLY),
+                            getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), 0, lp.height));
+                    buttonsBarHeight += button.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+                }
+            }
+        }
+
+        //Body gets what is left
+        int used = getPaddingTop() + getPaddingBottom() + headerHeight + buttonsBarHeight;
+        int bodyHeight = 0;
+        if(isShown(body)){
+            MarginLayoutParams lp = (MarginLayoutParams) body.getLayoutParams();
+            int bodyHeightSpec = heightMode == MeasureSpec.UNSPECIFIED
+                    ? MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+                    : MeasureSpec.makeMeasureSpec(Math.max(0, heightSize - used - lp.topMargin - lp.bottomMargin), MeasureSpec.AT_MOST);
+            body.measure(
+                    getChildMeasureSpec(MeasureSpec.makeMeasureSpec(innerWidth, MeasureSpec.EXACTLY), lp.leftMargin + lp.rightMargin, lp.width),
+                    bodyHeightSpec);
+            bodyHeight = body.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+        }
+
+        int height = used + bodyHeight;
+        if(heightMode == MeasureSpec.EXACTLY){
+            height = heightSize;
+        } else if(heightMode == MeasureSpec.AT_MOST){
+            height = Math.min(height, heightSize);
+        }
+
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int left = getPaddingLeft();
+        int right = r - l - getPaddingRight();
+        int top = getPaddingTop();
+
+        //Header, children centered vertically
+        int x = left + headerPadding;
+        if(isShown(icon)){
+            MarginLayoutParams lp = (MarginLayoutParams) icon.getLayoutParams();
+            x += lp.leftMargin;
+            int y = top + (headerHeight - icon.getMeasuredHeight()) / 2;
+            icon.layout(x, y, x + icon.getMeasuredWidth(), y + icon.getMeasuredHeight());
+            x += icon.getMeasuredWidth() + lp.rightMargin;
+        }
+        if(isShown(title)){
+            MarginLayoutParams lp = (MarginLayoutParams) title.getLayoutParams();
+            x += lp.leftMargin;
+            int y = top + (headerHeight - title.getMeasuredHeight()) / 2;
+            title.layout(x, y, x + title.getMeasuredWidth(), y + title.getMeasuredHeight());
+        }
+        top += headerHeight;
+
+        //Body
+        if(isShown(body)){
+            MarginLayoutParams lp = (MarginLayoutParams) body.getLayoutParams();
+            int bodyTop = top + lp.topMargin;
+            int bodyBottom = Math.min(bodyTop + body.getMeasuredHeight(), b - t - getPaddingBottom() - buttonsBarHeight);
+            body.layout(left + lp.leftMargin, bodyTop, left + lp.leftMargin + body.getMeasuredWidth(), Math.max(bodyTop, bodyBottom));
+            top = Math.max(bodyTop, bodyBottom) + lp.bottomMargin;
+        }
+
+        //Buttons bar
+        top += buttonsBarPadding;
+        if(buttonsStyle == VTDialog.BUTTONS_STYLE_HORIZONTAL){
+            x = left + buttonsBarPadding;
+            for(View button : buttons){
+                if(isShown(button)){
+                    MarginLayoutParams lp = (MarginLayoutParams) button.getLayoutParams();
+                    x += lp.leftMargin;
+                    int y = top + lp.topMargin;
+                    button.layout(x, y, x + button.getMeasuredWidth(), y + button.getMeasuredHeight());
+                    x += button.getMeasuredWidth() + lp.rightMargin;
+                }
+            }
+        } else {
+            for(View button : buttons){
+                if(isShown(button)){
+                    MarginLayoutParams lp = (MarginLayoutParams) button.getLayoutParams();
+                    int bx = left + buttonsBarPadding + lp.leftMargin;
+                    top += lp.topMargin;
+                    button.layout(bx, top, Math.min(right, bx + button.getMeasuredWidth()), top + button.getMeasuredHeight());
+                    top += button.getMeasuredHeight() + lp.bottomMargin;
+                }
+            }
+        }
+    }
+
+    private void findChildren(){
+        icon = title = body = null;
+        buttons[0] = buttons[1] = buttons[2] = null;
+        for(int i = 0; i < getChildCount(); i++){
+            View child = getChildAt(i);
+            int id = child.getId();
+            if(id == R.id.icon){
+                icon = child;
+            } else if(id == R.id.title){
+                title = child;
+            } else if(id == R.id.body){
+                body = child;
+            } else if(id == R.id.leftButton){
+                buttons[VTDialog.BUTTON_ID_LEFT] = child;
+            } else if(id == R.id.centerButton){
+                buttons[VTDialog.BUTTON_ID_CENTRAL] = child;
+            } else if(id == R.id.rightButton){
+                buttons[VTDialog.BUTTON_ID_RIGHT] = child;
+            }
+        }
+    }
+
+    private static boolean isShown(View view){
+        return view != null && view.getVisibility() != GONE;
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof MarginLayoutParams;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new MarginLayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new MarginLayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        if(p instanceof MarginLayoutParams)
+            return new MarginLayoutParams((MarginLayoutParams) p);
+        return new MarginLayoutParams(p);
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.content.DialogInterface;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Shows dialogs of a single activity one after another (or N at a time).
+ * <p>
+ * Requests with higher priority are shown first, requests with the same
+ * priority in order of arrival. Requests with the same key are collapsed
+ * into a single dialog: a pending request is replaced, a showing dialog
+ * gets its content updated in place. The next request is shown when
+ * a showing dialog is dismissed.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+
+public class VTDialogQueue {
+
+    public static final int PRIORITY_LOW = -10;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 10;
+
+    private final Activity activity;
+    private final ArrayList<Request> pending = new ArrayList<>();
+    private final ArrayList<Request> showing = new ArrayList<>();
+    private int maxShowing = 1;
+    private long sequence = 0;
+
+    private VTDialogQueue(Activity activity){
+        this.activity = activity;
+    }
+
+    /**
+     * Returns the dialog queue of the activity. The queue is stored
+     * in the activity window, so it lives as long as the activity does.
+     * @param activity the running activity.
+     * @return the activity dialog queue.
+     */
+
+    public static VTDialogQueue of(@NonNull Activity activity){
+        View decor = activity.getWindow().getDecorView();
+        Object tag = decor.getTag(R.id.vt_dialog_queue);
+        if(tag instanceof VTDialogQueue)
+            return (VTDialogQueue) tag;
+        VTDialogQueue queue = new VTDialogQueue(activity);
+        decor.setTag(R.id.vt_dialog_queue, queue);
+        return queue;
+    }
+
+    /**
+     * Sets how many dialogs may be visible at the same time. Default is 1.
+     * @return current VTDialogQueue instance
+     */
+
+    public VTDialogQueue setMaxShowing(int maxShowing){
+        this.maxShowing = Math.max(1, maxShowing);
+        drain();
+        return this;
+    }
+
+    /**
+     * Shows the dialog when there is a free slot.
+     * @param dialog the dialog to show.
+     * @return current VTDialogQueue instance
+     */
+
+    public VTDialogQueue enqueue(@NonNull VTDialog dialog){
+        return enqueue(dialog, PRIORITY_NORMAL, null);
+    }
+
+    /**
+     * Shows the dialog when there is a free slot.
+     * @param dialog the dialog to show.
+     * @param priority requests with higher priority are shown first.
+     * @return current VTDialogQueue instance
+     */
+
+    public VTDialogQueue enqueue(@NonNull VTDialog dialog, int priority){
+        return enqueue(dialog, priority, null);
+    }
+
+    /**
+     * Shows the dialog when there is a free slot. If a request with the same key
+     * is already waiting it is replaced, if it's already showing, its content
+     * is updated with the content of the given dialog.
+     * @param dialog the dialog to show.
+     * @param priority requests with higher priority are shown first.
+     * @param key de-duplication key, may be null.
+     * @return current VTDialogQueue instance
+     */
+
+    public VTDialogQueue enqueue(@NonNull VTDialog dialog, int priority, String key){
+        if(key != null){
+            for(Request request : showing){
+                if(key.equals(request.key)){
+                    request.dialog.updateFrom(dialog);
+                    return this;
+                }
+            }
+            for(int i = 0; i < pending.size(); i++){
+                Request request = pending.get(i);
+                if(key.equals(request.key)){
+                    pending.remove(i);
+                    insert(new Request(dialog, Math.max(priority, request.priority), key, request.sequence));
+                    return this;
+                }
+            }
+        }
+        insert(new Request(dialog, priority, key, sequence++));
+        drain();
+        return this;
+    }
+
+    /**
+     * Removes the waiting request with the given key and dismisses
+     * the showing one.
+     * @param key de-duplication key used in {@link #enqueue(VTDialog, int, String)}.
+     */
+
+    public void remove(@NonNull String key){
+        for(int i = pending.size() - 1; i >= 0; i--){
+            if(key.equals(pending.get(i).key))
+                pending.remove(i);
+        }
+        for(int i = showing.size() - 1; i >= 0; i--){
+            if(key.equals(showing.get(i).key))
+                showing.get(i).dialog.dismiss();
+        }
+    }
+
+    /**
+     * Removes all waiting requests. Showing dialogs are not dismissed.
+     */
+
+    public void clear(){
+        pending.clear();
+    }
+
+    /**
+     * Returns number of requests waiting to be shown.
+     */
+
+    public int getPendingCount(){
+        return pending.size();
+    }
+
+    /**
+     * Returns number of dialogs shown by this queue that are visible now.
+     */
+
+    public int getShowingCount(){
+        return showing.size();
+    }
+
+    //Private methods
+
+    private void insert(Request request){
+        int i = 0;
+        while (i < pending.size() && pending.get(i).comesBefore(request))
+            i++;
+        pending.add(i, request);
+    }
+
+    private void drain(){
+        if(activity.isFinishing() || activity.isDestroyed()){
+            pending.clear();
+            return;
+        }
+        while (showing.size() < maxShowing && !pending.isEmpty()){
+            Request request = pending.remove(0);
+            request.dialog.addInternalDismissListener(request);
+            request.dialog.show();
+            //A released dialog doesn't show and would never free its slot
+            if(request.dialog.isShowing() || request.dialog.isShowPending())
+                showing.add(request);
+            else
+                request.dialog.removeInternalDismissListener(request);
+        }
+    }
+
+    private class Request implements DialogInterface.OnDismissListener {
+
+        private final VTDialog dialog;
+        private final int priority;
+        private final String key;
+        private final long sequence;
+
+        private Request(VTDialog dialog, int priority, String key, long sequence){
+            this.dialog = dialog;
+            this.priority = priority;
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        private boolean comesBefore(Request other){
+            return priority > other.priority || (priority == other.priority && sequence < other.sequence);
+        }
+
+        @Override
+        public void onDismiss(DialogInterface dialogInterface) {
+            dialog.removeInternalDismissListener(this);
+            showing.remove(this);
+            drain();
+        }
+
+    }
+
+}
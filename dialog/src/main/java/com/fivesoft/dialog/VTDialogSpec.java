@@ -0,0 +1,107 @@
+package com.fivesoft.dialog;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Parcelable state of a {@link VTDialog}: texts, button texts and icons,
+ * mode, style, gravity, padding and flags. Views, drawables set as objects,
+ * click listeners and customization are not part of it.
+ * <p>
+ * Get it with {@link VTDialog#toSpec()} and create the dialog again with
+ * {@link VTDialog#from(android.app.Activity, VTDialogSpec, VTDialog.OnButtonClickListener)}.
+ */
+
+public final class VTDialogSpec implements Parcelable {
+
+    String title;
+    String message;
+    int dialogMode;
+    int buttonsStyle;
+    boolean flatLayout;
+    int gravity;
+    final int[] padding = new int[4];
+    final String[] buttonTexts = new String[3];
+    final int[] buttonIcons = new int[3];
+    int dialogIconRes;
+    boolean titleSingleLine;
+    boolean messageSingleLine;
+    boolean enabledLinkify;
+    boolean cancelable;
+    boolean dismissOnButtonClick;
+    boolean buttonIconAutoColor;
+    int textPrecomputeMode;
+    int windowAnimationMode;
+
+    VTDialogSpec(){}
+
+    private VTDialogSpec(Parcel in){
+        title = in.readString();
+        message = in.readString();
+        dialogMode = in.readInt();
+        buttonsStyle = in.readInt();
+        flatLayout = in.readInt() != 0;
+        gravity = in.readInt();
+        in.readIntArray(padding);
+        in.readStringArray(buttonTexts);
+        in.readIntArray(buttonIcons);
+        dialogIconRes = in.readInt();
+        int flags = in.readInt();
+        titleSingleLine = (flags & 1) != 0;
+        messageSingleLine = (flags & 1 << 1) != 0;
+        enabledLinkify = (flags & 1 << 2) != 0;
+        cancelable = (flags & 1 << 3) != 0;
+        dismissOnButtonClick = (flags & 1 << 4) != 0;
+        buttonIconAutoColor = (flags & 1 << 5) != 0;
+        textPrecomputeMode = in.readInt();
+        windowAnimationMode = in.readInt();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(title);
+        dest.writeString(message);
+        dest.writeInt(dialogMode);
+        dest.writeInt(buttonsStyle);
+        dest.writeInt(flatLayout ? 1 : 0);
+        dest.writeInt(gravity);
+        dest.writeIntArray(padding);
+        dest.writeStringArray(buttonTexts);
+        dest.writeIntArray(buttonIcons);
+        dest.writeInt(dialogIconRes);
+        dest.writeInt((titleSingleLine ? 1 : 0)
+                | (messageSingleLine ? 1 << 1 : 0)
+                | (enabledLinkify ? 1 << 2 : 0)
+                | (cancelable ? 1 << 3 : 0)
+                | (dismissOnButtonClick ? 1 << 4 : 0)
+                | (buttonIconAutoColor ? 1 << 5 : 0));
+        dest.writeInt(textPrecomputeMode);
+        dest.writeInt(windowAnimationMode);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<VTDialogSpec> CREATOR = new Creator<VTDialogSpec>() {
+        @Override
+        public VTDialogSpec createFromParcel(Parcel in) {
+            return new VTDialogSpec(in);
+        }
+
+        @Override
+        public VTDialogSpec[] newArray(int size) {
+            return new VTDialogSpec[size];
+        }
+    };
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "VTDialogSpec{title=" + title + ", mode=" + dialogMode + ", buttonsStyle=" + buttonsStyle + "}";
+    }
+
+}
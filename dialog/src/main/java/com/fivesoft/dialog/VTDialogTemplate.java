@@ -0,0 +1,318 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.view.Gravity;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of dialog properties shared by many dialogs: mode, buttons style,
+ * gravity, padding, flags, icon, theme and customization. Build it once and create
+ * dialogs with {@link VTDialog#from(Activity, VTDialogTemplate)}, then set only
+ * the per-dialog properties like title, message and buttons.
+ * <p>
+ * Templates are thread-safe and can be kept in static fields. Paddings in px
+ * are cached on the template per display density, so dialogs created from it
+ * don't convert them again. The icon and theme values are cached by
+ * {@link IconCache} and {@link VTDialogTheme}.
+ * <p>
+ * The customization is shared by all dialogs created from the template,
+ * its {@link VTDialog.DialogCustomization#dialog} field points to the dialog
+ * being bound while its methods are called. Don't keep or use it outside of them.
+ */
+
+public final class VTDialogTemplate {
+
+    final int dialogMode;
+    final int buttonsStyle;
+    final boolean flatLayout;
+    final int gravity;
+    final int paddingLeft, paddingTop, paddingRight, paddingBottom;
+    final int dialogIconRes;
+    final boolean titleSingleLine;
+    final boolean messageSingleLine;
+    final boolean enabledLinkify;
+    final boolean cancelable;
+    final boolean dismissOnButtonClick;
+    final boolean buttonIconAutoColor;
+    final int textPrecomputeMode;
+    final int windowAnimationMode;
+    final long cardEnterDuration;
+    final long cardExitDuration;
+    final VTDialog.DialogCustomization dialogCustomization;
+    final VTDialogTheme theme;
+
+    private final int hashCode;
+
+    //Last resolved values, replaced as a whole so readers never see a partial update.
+    private volatile Resolved resolved;
+
+    private VTDialogTemplate(Builder builder){
+        dialogMode = builder.dialogMode;
+        buttonsStyle = builder.buttonsStyle;
+        flatLayout = builder.flatLayout;
+        gravity = builder.gravity;
+        paddingLeft = builder.paddingLeft;
+        paddingTop = builder.paddingTop;
+        paddingRight = builder.paddingRight;
+        paddingBottom = builder.paddingBottom;
+        dialogIconRes = builder.dialogIconRes;
+        titleSingleLine = builder.titleSingleLine;
+        messageSingleLine = builder.messageSingleLine;
+        enabledLinkify = builder.enabledLinkify;
+        cancelable = builder.cancelable;
+        dismissOnButtonClick = builder.dismissOnButtonClick;
+        buttonIconAutoColor = builder.buttonIconAutoColor;
+        textPrecomputeMode = builder.textPrecomputeMode;
+        windowAnimationMode = builder.windowAnimationMode;
+        cardEnterDuration = builder.cardEnterDuration;
+        cardExitDuration = builder.cardExitDuration;
+        dialogCustomization = builder.dialogCustomization;
+        theme = builder.theme;
+        hashCode = computeHashCode();
+    }
+
+    /**
+     * Returns a builder with the properties of this template.
+     */
+
+    public Builder buildUpon(){
+        Builder builder = new Builder();
+        builder.dialogMode = dialogMode;
+        builder.buttonsStyle = buttonsStyle;
+        builder.flatLayout = flatLayout;
+        builder.gravity = gravity;
+        builder.paddingLeft = paddingLeft;
+        builder.paddingTop = paddingTop;
+        builder.paddingRight = paddingRight;
+        builder.paddingBottom = paddingBottom;
+        builder.dialogIconRes = dialogIconRes;
+        builder.titleSingleLine = titleSingleLine;
+        builder.messageSingleLine = messageSingleLine;
+        builder.enabledLinkify = enabledLinkify;
+        builder.cancelable = cancelable;
+        builder.dismissOnButtonClick = dismissOnButtonClick;
+        builder.buttonIconAutoColor = buttonIconAutoColor;
+        builder.textPrecomputeMode = textPrecomputeMode;
+        builder.windowAnimationMode = windowAnimationMode;
+        builder.cardEnterDuration = cardEnterDuration;
+        builder.cardExitDuration = cardExitDuration;
+        builder.dialogCustomization = dialogCustomization;
+        builder.theme = theme;
+        return builder;
+    }
+
+    /**
+     * Inflates the layout used by dialogs of this template when the main
+     * thread is idle. See {@link VTDialog#prewarm(Activity, int, int)}.
+     */
+
+    public void prewarm(@NonNull Activity activity){
+        DialogLayoutPool.prewarm(activity, dialogMode, buttonsStyle, flatLayout, 1);
+    }
+
+    /**
+     * Returns the paddings in px for the activity display, in order left, top, right, bottom.
+     * The returned array is shared, don't modify it. Main thread only.
+     */
+
+    int[] getPaddingPx(Activity activity){
+        DisplayEnvironment environment = DisplayEnvironment.of(activity);
+        float density = environment.getDensity();
+        Resolved resolved = this.resolved;
+        if(resolved == null || resolved.density != density){
+            resolved = new Resolved(density, new int[]{
+                    environment.dpToPx(paddingLeft),
+                    environment.dpToPx(paddingTop),
+                    environment.dpToPx(paddingRight),
+                    environment.dpToPx(paddingBottom)});
+            this.resolved = resolved;
+        }
+        return resolved.paddingPx;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof VTDialogTemplate))
+            return false;
+        VTDialogTemplate t = (VTDialogTemplate) o;
+        return hashCode == t.hashCode
+                && dialogMode == t.dialogMode && buttonsStyle == t.buttonsStyle && flatLayout == t.flatLayout
+                && gravity == t.gravity && paddingLeft == t.paddingLeft && paddingTop == t.paddingTop
+                && paddingRight == t.paddingRight && paddingBottom == t.paddingBottom
+                && dialogIconRes == t.dialogIconRes && titleSingleLine == t.titleSingleLine
+                && messageSingleLine == t.messageSingleLine && enabledLinkify == t.enabledLinkify
+                && cancelable == t.cancelable && dismissOnButtonClick == t.dismissOnButtonClick
+                && buttonIconAutoColor == t.buttonIconAutoColor && textPrecomputeMode == t.textPrecomputeMode
+                && windowAnimationMode == t.windowAnimationMode && cardEnterDuration == t.cardEnterDuration
+                && cardExitDuration == t.cardExitDuration && dialogCustomization == t.dialogCustomization
+                && (theme == null ? t.theme == null : theme.equals(t.theme));
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    private int computeHashCode(){
+        return Arrays.hashCode(new Object[]{
+                dialogMode, buttonsStyle, flatLayout, gravity,
+                paddingLeft, paddingTop, paddingRight, paddingBottom,
+                dialogIconRes, titleSingleLine, messageSingleLine, enabledLinkify,
+                cancelable, dismissOnButtonClick, buttonIconAutoColor,
+                textPrecomputeMode, windowAnimationMode, cardEnterDuration, cardExitDuration,
+                System.identityHashCode(dialogCustomization), theme});
+    }
+
+    private static final class Resolved {
+
+        private final float density;
+        private final int[] paddingPx;
+
+        private Resolved(float density, int[] paddingPx){
+            this.density = density;
+            this.paddingPx = paddingPx;
+        }
+
+    }
+
+    /**
+     * Builds {@link VTDialogTemplate}. Defaults are the same as for a new {@link VTDialog}.
+     */
+
+    public static final class Builder {
+
+        private int dialogMode = VTDialog.DIALOG_MODE_NORMAL;
+        private int buttonsStyle = VTDialog.BUTTONS_STYLE_HORIZONTAL;
+        private boolean flatLayout = true;
+        private int gravity = Gravity.CENTER;
+        private int paddingLeft = 8, paddingTop = 8, paddingRight = 8, paddingBottom = 8;
+        private int dialogIconRes = 0;
+        private boolean titleSingleLine = false;
+        private boolean messageSingleLine = false;
+        private boolean enabledLinkify = false;
+        private boolean cancelable = true;
+        private boolean dismissOnButtonClick = true;
+        private boolean buttonIconAutoColor = true;
+        private int textPrecomputeMode = VTDialog.TEXT_PRECOMPUTE_OFF;
+        private int windowAnimationMode = VTDialog.WINDOW_ANIMATION_WINDOW;
+        private long cardEnterDuration = 200;
+        private long cardExitDuration = 150;
+        private VTDialog.DialogCustomization dialogCustomization = null;
+        private VTDialogTheme theme = null;
+
+        public Builder setDialogMode(int dialogMode) {
+            this.dialogMode = dialogMode;
+            return this;
+        }
+
+        public Builder setButtonsStyle(int buttonsStyle) {
+            this.buttonsStyle = buttonsStyle;
+            return this;
+        }
+
+        public Builder setFlatLayout(boolean flatLayout) {
+            this.flatLayout = flatLayout;
+            return this;
+        }
+
+        public Builder setGravity(int gravity) {
+            this.gravity = gravity;
+            return this;
+        }
+
+        /**
+         * Sets the dialog padding in dp.
+         */
+
+        public Builder setPadding(int left, int top, int right, int bottom) {
+            this.paddingLeft = left;
+            this.paddingTop = top;
+            this.paddingRight = right;
+            this.paddingBottom = bottom;
+            return this;
+        }
+
+        public Builder setDialogIcon(int resId) {
+            this.dialogIconRes = resId;
+            return this;
+        }
+
+        public Builder setTitleSingleLine(boolean titleSingleLine) {
+            this.titleSingleLine = titleSingleLine;
+            return this;
+        }
+
+        public Builder setMessageSingleLine(boolean messageSingleLine) {
+            this.messageSingleLine = messageSingleLine;
+            return this;
+        }
+
+        public Builder setEnabledLinkify(boolean enabledLinkify) {
+            this.enabledLinkify = enabledLinkify;
+            return this;
+        }
+
+        public Builder setCancelable(boolean cancelable) {
+            this.cancelable = cancelable;
+            return this;
+        }
+
+        public Builder setDismissOnButtonClick(boolean dismissOnButtonClick) {
+            this.dismissOnButtonClick = dismissOnButtonClick;
+            return this;
+        }
+
+        public Builder setButtonIconAutoColor(boolean buttonIconAutoColor) {
+            this.buttonIconAutoColor = buttonIconAutoColor;
+            return this;
+        }
+
+        public Builder setTextPrecomputeMode(int textPrecomputeMode) {
+            this.textPrecomputeMode = textPrecomputeMode;
+            return this;
+        }
+
+        public Builder setWindowAnimationMode(int windowAnimationMode) {
+            this.windowAnimationMode = windowAnimationMode;
+            return this;
+        }
+
+        public Builder setCardAnimationDuration(long enterDuration, long exitDuration) {
+            this.cardEnterDuration = enterDuration;
+            this.cardExitDuration = exitDuration;
+            return this;
+        }
+
+        /**
+         * Sets the customization shared by all dialogs created from the template.
+         * It must not keep per-dialog state, nor use its {@code dialog} field
+         * outside of the customize methods.
+         */
+
+        public Builder customize(VTDialog.DialogCustomization dialogCustomization) {
+            this.dialogCustomization = dialogCustomization;
+            return this;
+        }
+
+        /**
+         * Sets the theme of dialogs created from the template.
+         * @see VTDialog#setTheme(VTDialogTheme)
+         */
+
+        public Builder setTheme(VTDialogTheme theme) {
+            this.theme = theme;
+            return this;
+        }
+
+        public VTDialogTemplate build(){
+            return new VTDialogTemplate(this);
+        }
+
+    }
+
+}
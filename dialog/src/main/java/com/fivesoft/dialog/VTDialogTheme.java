@@ -0,0 +1,373 @@
+package com.fivesoft.dialog;
+
+import android.app.Activity;
+import android.content.res.Resources;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.util.TypedValue;
+import android.widget.TextView;
+
+import androidx.annotation.AttrRes;
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable look of the dialog: colors, text sizes, corner radius, elevation,
+ * button background and typefaces. Only the values that were set are applied,
+ * the rest comes from the dialog layout.
+ * <p>
+ * Colors can be given directly or as theme attributes, e.g. {@code R.attr.colorSurface},
+ * and dimensions are given in dp and sp. They are resolved once per activity instance
+ * and cached on its theme object, so a theme can be shared by all dialogs of the
+ * app and is applied in a single pass when the dialog layout is bound. A recreated
+ * activity, e.g. after a rotation, has a new theme object and resolves the values
+ * again, once: Android has no public key telling two theme objects have the same content.
+ * <p>
+ * {@link VTDialog.DialogCustomization} is applied after the theme, so it can still
+ * change anything the theme doesn't cover.
+ */
+
+public final class VTDialogTheme {
+
+    private static final int BACKGROUND = 0;
+    private static final int TITLE = 1;
+    private static final int MESSAGE = 2;
+    private static final int BUTTON = 3;
+
+    private static final float NOT_SET = -1;
+
+    //Indexed by BACKGROUND, TITLE, MESSAGE and BUTTON. A color is used when its attribute is 0 and it's set.
+    private final int[] colors;
+    private final int[] colorAttrs;
+    private final boolean[] colorsSet;
+    //Indexed by TITLE, MESSAGE and BUTTON, in sp
+    private final float[] textSizes;
+    private final Typeface[] typefaces;
+    private final float cornerRadius;
+    private final float elevation;
+    private final int buttonBackgroundRes;
+
+    private final int hashCode;
+
+    //Resolved values per theme object, so per activity instance. Only touched on the main thread.
+    private final WeakHashMap<Resources.Theme, Resolved> resolved = new WeakHashMap<>();
+
+    private VTDialogTheme(Builder builder){
+        colors = builder.colors.clone();
+        colorAttrs = builder.colorAttrs.clone();
+        colorsSet = builder.colorsSet.clone();
+        textSizes = builder.textSizes.clone();
+        typefaces = builder.typefaces.clone();
+        cornerRadius = builder.cornerRadius;
+        elevation = builder.elevation;
+        buttonBackgroundRes = builder.buttonBackgroundRes;
+        hashCode = Arrays.hashCode(new Object[]{
+                Arrays.hashCode(colors), Arrays.hashCode(colorAttrs), Arrays.hashCode(colorsSet),
+                Arrays.hashCode(textSizes), Arrays.hashCode(typefaces),
+                cornerRadius, elevation, buttonBackgroundRes});
+    }
+
+    /**
+     * Returns a builder with the values of this theme.
+     */
+
+    public Builder buildUpon(){
+        Builder builder = new Builder();
+        System.arraycopy(colors, 0, builder.colors, 0, colors.length);
+        System.arraycopy(colorAttrs, 0, builder.colorAttrs, 0, colorAttrs.length);
+        System.arraycopy(colorsSet, 0, builder.colorsSet, 0, colorsSet.length);
+        System.arraycopy(textSizes, 0, builder.textSizes, 0, textSizes.length);
+        System.arraycopy(typefaces, 0, builder.typefaces, 0, typefaces.length);
+        builder.cornerRadius = cornerRadius;
+        builder.elevation = elevation;
+        builder.buttonBackgroundRes = buttonBackgroundRes;
+        return builder;
+    }
+
+    /**
+     * Applies the theme to the dialog views. Main thread only.
+     */
+
+    void apply(Activity activity, CardView background, TextView title, TextView message,
+               TextView leftButton, TextView centerButton, TextView rightButton){
+        Resolved values = resolve(activity);
+        Resources resources = activity.getResources();
+
+        if(values.colorsSet[BACKGROUND])
+            background.setCardBackgroundColor(values.colors[BACKGROUND]);
+        if(values.cornerRadius >= 0)
+            background.setRadius(values.cornerRadius);
+        if(values.elevation >= 0)
+            background.setCardElevation(values.elevation);
+
+        applyText(values, TITLE, title);
+        applyText(values, MESSAGE, message);
+        applyButton(values, resources, leftButton);
+        applyButton(values, resources, centerButton);
+        applyButton(values, resources, rightButton);
+    }
+
+    private static void applyButton(Resolved values, Resources resources, TextView button){
+        if(button == null)
+            return;
+        applyText(values, BUTTON, button);
+        if(values.buttonBackground != null)
+            button.setBackground(values.buttonBackground.newDrawable(resources));
+    }
+
+    private static void applyText(Resolved values, int index, TextView textView){
+        if(values.colorsSet[index])
+            textView.setTextColor(values.colors[index]);
+        if(values.textSizes[index] >= 0)
+            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, values.textSizes[index]);
+        if(values.typefaces[index] != null)
+            textView.setTypeface(values.typefaces[index]);
+    }
+
+    private Resolved resolve(Activity activity){
+        Resources.Theme theme = activity.getTheme();
+        int density = activity.getResources().getConfiguration().densityDpi;
+        Resolved values = resolved.get(theme);
+        if(values == null || values.density != density){
+            values = new Resolved(activity, density);
+            resolved.put(theme, values);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof VTDialogTheme))
+            return false;
+        VTDialogTheme t = (VTDialogTheme) o;
+        return hashCode == t.hashCode
+                && Arrays.equals(colors, t.colors) && Arrays.equals(colorAttrs, t.colorAttrs)
+                && Arrays.equals(colorsSet, t.colorsSet) && Arrays.equals(textSizes, t.textSizes)
+                && Arrays.equals(typefaces, t.typefaces) && cornerRadius == t.cornerRadius
+                && elevation == t.elevation && buttonBackgroundRes == t.buttonBackgroundRes;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Values of the theme for an activity theme and display density, in px and color ints.
+     */
+
+    private final class Resolved {
+
+        private final int density;
+        private final int[] colors = new int[4];
+        private final boolean[] colorsSet = new boolean[4];
+        private final float[] textSizes = new float[4];
+        private final Typeface[] typefaces = VTDialogTheme.this.typefaces;
+        private final float cornerRadius;
+        private final float elevation;
+        private final Drawable.ConstantState buttonBackground;
+
+        private Resolved(Activity activity, int density){
+            this.density = density;
+            Resources resources = activity.getResources();
+            Resources.Theme theme = activity.getTheme();
+            TypedValue value = new TypedValue();
+
+            for(int i = 0; i < colors.length; i++){
+                if(colorAttrs[i] != 0){
+                    //The value is left from the previous attribute when this one isn't in the theme
+                    if(!theme.resolveAttribute(colorAttrs[i], value, true))
+                        continue;
+                    if(value.type >= TypedValue.TYPE_FIRST_COLOR_INT && value.type <= TypedValue.TYPE_LAST_COLOR_INT){
+                        this.colors[i] = value.data;
+                        colorsSet[i] = true;
+                    } else if(value.resourceId != 0){
+                        //Color state list or a reference to a color resource
+                        try {
+                            this.colors[i] = ContextCompat.getColorStateList(activity, value.resourceId).getDefaultColor();
+                            colorsSet[i] = true;
+                        } catch (Resources.NotFoundException e){
+                            e.printStackTrace();
+                        }
+                    }
+                } else if(VTDialogTheme.this.colorsSet[i]){
+                    this.colors[i] = VTDialogTheme.this.colors[i];
+                    colorsSet[i] = true;
+                }
+            }
+
+            textSizes[BACKGROUND] = NOT_SET;
+            for(int i = TITLE; i <= BUTTON; i++){
+                float sp = VTDialogTheme.this.textSizes[i];
+                textSizes[i] = sp < 0 ? NOT_SET : TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, sp, resources.getDisplayMetrics());
+            }
+
+            cornerRadius = VTDialogTheme.this.cornerRadius < 0 ? NOT_SET
+                    : TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, VTDialogTheme.this.cornerRadius, resources.getDisplayMetrics());
+            elevation = VTDialogTheme.this.elevation < 0 ? NOT_SET
+                    : TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, VTDialogTheme.this.elevation, resources.getDisplayMetrics());
+
+            Drawable.ConstantState buttonBackground = null;
+            if(buttonBackgroundRes != 0){
+                try {
+                    Drawable drawable = ContextCompat.getDrawable(activity, buttonBackgroundRes);
+                    if(drawable != null)
+                        buttonBackground = drawable.getConstantState();
+                } catch (Resources.NotFoundException e){
+                    e.printStackTrace();
+                }
+            }
+            this.buttonBackground = buttonBackground;
+        }
+
+    }
+
+    /**
+     * Builds {@link VTDialogTheme}. Values that aren't set keep the look of the dialog layout.
+     */
+
+    public static final class Builder {
+
+        private final int[] colors = new int[4];
+        private final int[] colorAttrs = new int[4];
+        private final boolean[] colorsSet = new boolean[4];
+        private final float[] textSizes = {NOT_SET, NOT_SET, NOT_SET, NOT_SET};
+        private final Typeface[] typefaces = new Typeface[4];
+        private float cornerRadius = NOT_SET;
+        private float elevation = NOT_SET;
+        private int buttonBackgroundRes = 0;
+
+        public Builder setBackgroundColor(@ColorInt int color){
+            return setColor(BACKGROUND, color);
+        }
+
+        /**
+         * Sets the background color to the value of the theme attribute, e.g. {@code R.attr.colorSurface}.
+         */
+
+        public Builder setBackgroundColorAttr(@AttrRes int attr){
+            return setColorAttr(BACKGROUND, attr);
+        }
+
+        public Builder setTitleTextColor(@ColorInt int color){
+            return setColor(TITLE, color);
+        }
+
+        public Builder setTitleTextColorAttr(@AttrRes int attr){
+            return setColorAttr(TITLE, attr);
+        }
+
+        public Builder setMessageTextColor(@ColorInt int color){
+            return setColor(MESSAGE, color);
+        }
+
+        public Builder setMessageTextColorAttr(@AttrRes int attr){
+            return setColorAttr(MESSAGE, attr);
+        }
+
+        public Builder setButtonTextColor(@ColorInt int color){
+            return setColor(BUTTON, color);
+        }
+
+        public Builder setButtonTextColorAttr(@AttrRes int attr){
+            return setColorAttr(BUTTON, attr);
+        }
+
+        /**
+         * Sets the title text size in sp.
+         */
+
+        public Builder setTitleTextSize(float sp){
+            textSizes[TITLE] = sp;
+            return this;
+        }
+
+        /**
+         * Sets the message text size in sp.
+         */
+
+        public Builder setMessageTextSize(float sp){
+            textSizes[MESSAGE] = sp;
+            return this;
+        }
+
+        /**
+         * Sets the buttons text size in sp.
+         */
+
+        public Builder setButtonTextSize(float sp){
+            textSizes[BUTTON] = sp;
+            return this;
+        }
+
+        public Builder setTitleTypeface(Typeface typeface){
+            typefaces[TITLE] = typeface;
+            return this;
+        }
+
+        public Builder setMessageTypeface(Typeface typeface){
+            typefaces[MESSAGE] = typeface;
+            return this;
+        }
+
+        public Builder setButtonTypeface(Typeface typeface){
+            typefaces[BUTTON] = typeface;
+            return this;
+        }
+
+        /**
+         * Sets the corner radius of the dialog background in dp.
+         */
+
+        public Builder setCornerRadius(float dp){
+            this.cornerRadius = dp;
+            return this;
+        }
+
+        /**
+         * Sets the elevation of the dialog background in dp.
+         */
+
+        public Builder setElevation(float dp){
+            this.elevation = dp;
+            return this;
+        }
+
+        /**
+         * Sets the background of the buttons, e.g. a ripple drawable.
+         */
+
+        public Builder setButtonBackground(@DrawableRes int resId){
+            this.buttonBackgroundRes = resId;
+            return this;
+        }
+
+        @NonNull
+        public VTDialogTheme build(){
+            return new VTDialogTheme(this);
+        }
+
+        private Builder setColor(int index, int color){
+            colors[index] = color;
+            colorAttrs[index] = 0;
+            colorsSet[index] = true;
+            return this;
+        }
+
+        private Builder setColorAttr(int index, int attr){
+            colorAttrs[index] = attr;
+            colorsSet[index] = attr != 0;
+            return this;
+        }
+
+    }
+
+}
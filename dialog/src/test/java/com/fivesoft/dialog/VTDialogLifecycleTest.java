@@ -0,0 +1,85 @@
+package com.fivesoft.dialog;
+
+import android.os.Looper;
+
+import androidx.activity.ComponentActivity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class VTDialogLifecycleTest {
+
+    private static final int ACTIVITIES = 20;
+
+    @Test
+    public void destroyedActivitiesAreCollectable() throws Exception {
+        List<WeakReference<Object>> references = new ArrayList<>();
+
+        for(int i = 0; i < ACTIVITIES; i++){
+            ActivityController<ComponentActivity> controller = Robolectric.buildActivity(ComponentActivity.class).setup();
+            ComponentActivity activity = controller.get();
+
+            VTDialog dialog = VTDialog.from(activity)
+                    .setTitle("Title")
+                    .setMessage("Message")
+                    .customize(new VTDialog.DialogCustomization())
+                    .setLeftButton("Left", v -> {})
+                    .setRightButton("Right", v -> {});
+            dialog.show();
+            shadowOf(Looper.getMainLooper()).idle();
+
+            //Activity destroyed with the dialog still showing, like on rotation
+            controller.pause().stop().destroy();
+            shadowOf(Looper.getMainLooper()).idle();
+
+            assertFalse(dialog.isShowing());
+            references.add(new WeakReference<>(activity));
+            references.add(new WeakReference<>(dialog));
+        }
+
+        for(int attempt = 0; attempt < 20 && !allCleared(references); attempt++){
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(50);
+        }
+
+        for(WeakReference<Object> reference : references)
+            assertNull("Instance is still reachable: " + reference.get(), reference.get());
+    }
+
+    @Test
+    public void showAfterDestroyIsIgnored(){
+        ActivityController<ComponentActivity> controller = Robolectric.buildActivity(ComponentActivity.class).setup();
+        VTDialog dialog = VTDialog.from(controller.get()).setTitle("Title");
+        dialog.show();
+        controller.pause().stop().destroy();
+
+        dialog.show();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertFalse(dialog.isShowing());
+    }
+
+    private static boolean allCleared(List<WeakReference<Object>> references){
+        for(WeakReference<Object> reference : references){
+            if(reference.get() != null)
+                return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,297 @@
+package com.fivesoft.dialog;
+
+import android.os.Looper;
+import android.view.ViewGroup;
+
+import androidx.activity.ComponentActivity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowDialog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Shows, updates and dismisses dialogs thousands of times in every mode and
+ * buttons style, and fails when a window or an overlay is leaked, or when the
+ * retained heap or the bytes allocated by a hot path grow past the recorded baseline.
+ * <p>
+ * Baselines are measured per variant on Robolectric, including the frame that
+ * applies the change, and kept in {@code src/test/resources/soak-baseline.properties}.
+ * Record them on the main branch with
+ * {@code ./gradlew :dialog:testDebugUnitTest --tests '*VTDialogSoakTest' -Pvtdialog.soak.record}
+ * and commit the file. Until a variant has a baseline, its checks use the fallback
+ * budgets below, loose enough for any machine but still failing on a leaked
+ * dialog per cycle or a layout inflated per update.
+ */
+
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 28)
+public class VTDialogSoakTest {
+
+    private static final int CYCLES = 2000;
+    private static final int WARMUP = 200;
+    private static final int MEASURED = 200;
+    private static final long FRAME_MS = 16;
+    //Longer than the card exit animation, so the dialog is gone after it
+    private static final long DISMISS_MS = 400;
+
+    //A budget is the baseline plus half of it
+    private static final int TOLERANCE_PERCENT = 150;
+
+    //Heap samples taken to tell the measurement noise
+    private static final int NOISE_SAMPLES = 5;
+
+    private static final String RETAINED_GROWTH = "retainedGrowth";
+    private static final String RESHOW = "reshow";
+    private static final String TEXT_UPDATE = "textUpdate";
+
+    //Used when there's no recorded baseline
+    private static final long FALLBACK_RETAINED_GROWTH_BYTES = 2 * 1024 * 1024;
+    private static final long FALLBACK_RESHOW_BYTES = 512 * 1024;
+    private static final long FALLBACK_TEXT_UPDATE_BYTES = 64 * 1024;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{2}")
+    public static Collection<Object[]> parameters(){
+        return Arrays.asList(new Object[][]{
+                {VTDialog.DIALOG_MODE_NORMAL, VTDialog.BUTTONS_STYLE_HORIZONTAL, "normal.horizontal"},
+                {VTDialog.DIALOG_MODE_NORMAL, VTDialog.BUTTONS_STYLE_VERTICAL, "normal.vertical"},
+                {VTDialog.DIALOG_MODE_FULLSCREEN, VTDialog.BUTTONS_STYLE_HORIZONTAL, "fullscreen.horizontal"},
+                {VTDialog.DIALOG_MODE_FULLSCREEN, VTDialog.BUTTONS_STYLE_VERTICAL, "fullscreen.vertical"},
+                {VTDialog.DIALOG_MODE_OVERLAY, VTDialog.BUTTONS_STYLE_HORIZONTAL, "overlay.horizontal"},
+                {VTDialog.DIALOG_MODE_OVERLAY, VTDialog.BUTTONS_STYLE_VERTICAL, "overlay.vertical"}
+        });
+    }
+
+    private final int dialogMode;
+    private final int buttonsStyle;
+    private final String variant;
+
+    private ActivityController<ComponentActivity> controller;
+    private ComponentActivity activity;
+
+    public VTDialogSoakTest(int dialogMode, int buttonsStyle, String variant){
+        this.dialogMode = dialogMode;
+        this.buttonsStyle = buttonsStyle;
+        this.variant = variant;
+    }
+
+    @Before
+    public void setUp(){
+        controller = Robolectric.buildActivity(ComponentActivity.class).setup();
+        activity = controller.get();
+    }
+
+    @After
+    public void tearDown(){
+        controller.pause().stop().destroy();
+        idle(0);
+    }
+
+    @Test
+    public void showUpdateDismissKeepsHeapAndWindowsFlat() throws Exception {
+        int windows = windowCount();
+        int overlayChildren = overlayParent().getChildCount();
+        VTDialog dialog = newDialog();
+
+        long baseline = 0;
+        for(int i = 0; i < CYCLES; i++){
+            if(i == WARMUP)
+                baseline = retainedHeap();
+
+            //Mix of re-shown and new instances, like in a real session
+            if(i % 10 == 0)
+                dialog = newDialog();
+            dialog.show();
+            idle(FRAME_MS);
+            dialog.setTitle("Title " + i);
+            dialog.setMessage("Message " + i);
+            dialog.setRightButton("Right " + i, v -> {});
+            idle(FRAME_MS);
+            dialog.dismiss();
+            idle(DISMISS_MS);
+
+            assertFalse(dialog.isShowing());
+            if(i % 100 == 0){
+                assertEquals("Leaked window after cycle " + i, windows, windowCount());
+                assertEquals("Leaked overlay after cycle " + i, overlayChildren, overlayParent().getChildCount());
+            }
+        }
+
+        long growth = retainedHeap() - baseline;
+        long noise = retainedHeapNoise();
+        assertEquals(windows, windowCount());
+        assertEquals(overlayChildren, overlayParent().getChildCount());
+        checkBudget(RETAINED_GROWTH, FALLBACK_RETAINED_GROWTH_BYTES, Math.max(0, growth), noise,
+                "Retained heap grew by " + growth + " bytes in " + (CYCLES - WARMUP) + " cycles");
+    }
+
+    @Test
+    public void reshowStaysWithinAllocationBudget(){
+        assumeTrue(Allocations.allocatedBytes() >= 0);
+        VTDialog dialog = newDialog();
+        long perOp = allocatedPerOp(() -> {
+            dialog.show();
+            idle(FRAME_MS);
+            dialog.dismiss();
+            idle(DISMISS_MS);
+        });
+        checkBudget(RESHOW, FALLBACK_RESHOW_BYTES, perOp, 0, "Re-show allocates " + perOp + " bytes");
+    }
+
+    @Test
+    public void textUpdateWhileShowingStaysWithinAllocationBudget(){
+        assumeTrue(Allocations.allocatedBytes() >= 0);
+        VTDialog dialog = newDialog();
+        dialog.show();
+        idle(FRAME_MS);
+
+        String[] titles = {"Title A", "Title B"};
+        String[] messages = {"Message A", "Message B"};
+        int[] i = {0};
+        long perOp = allocatedPerOp(() -> {
+            dialog.setTitle(titles[i[0] & 1]);
+            dialog.setMessage(messages[i[0] & 1]);
+            i[0]++;
+            idle(FRAME_MS);
+        });
+        dialog.dismiss();
+        idle(DISMISS_MS);
+
+        checkBudget(TEXT_UPDATE, FALLBACK_TEXT_UPDATE_BYTES, perOp, 0, "setTitle/setMessage allocates " + perOp + " bytes");
+    }
+
+    //Records the value with -Pvtdialog.soak.record, otherwise compares it with the recorded one or the fallback.
+    private void checkBudget(String name, long fallback, long value, long noise, String message){
+        String key = variant + '.' + name;
+        if(Boolean.getBoolean("vtdialog.soak.record")){
+            recordBaseline(key, value);
+            return;
+        }
+        String recorded = loadBaselines().getProperty(key);
+        long budget = recorded != null
+                ? Long.parseLong(recorded.trim()) * TOLERANCE_PERCENT / 100 + noise
+                : fallback + noise;
+        assertTrue(message + ", budget " + budget + (recorded != null ? " (baseline " + recorded.trim() + ")" : " (fallback)"),
+                value <= budget);
+    }
+
+    private static Properties loadBaselines(){
+        Properties properties = new Properties();
+        File file = baselineFile();
+        if(file.exists()){
+            try(InputStream in = new FileInputStream(file)){
+                properties.load(in);
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }
+        return properties;
+    }
+
+    //Variants run one after another in the same JVM, so a read-modify-write is enough.
+    private static synchronized void recordBaseline(String key, long value){
+        Properties properties = loadBaselines();
+        properties.setProperty(key, Long.toString(value));
+        File file = baselineFile();
+        File dir = file.getAbsoluteFile().getParentFile();
+        if(dir != null)
+            dir.mkdirs();
+        try(OutputStream out = new FileOutputStream(file)){
+            properties.store(out, "VTDialogSoakTest baselines in bytes, see the test for how to record them");
+        } catch (IOException e){
+            throw new IllegalStateException("Can't write " + file, e);
+        }
+    }
+
+    private static File baselineFile(){
+        return new File(System.getProperty("vtdialog.soak.baseline", "src/test/resources/soak-baseline.properties"));
+    }
+
+    private VTDialog newDialog(){
+        return VTDialog.from(activity)
+                .setTitle("Title")
+                .setMessage("This is message text.")
+                .setDialogMode(dialogMode)
+                .setButtonsStyle(buttonsStyle)
+                .setLeftButton("Left", v -> {})
+                .setCentralButton("Central", v -> {})
+                .setRightButton("Right", v -> {});
+    }
+
+    private static long allocatedPerOp(Runnable operation){
+        for(int i = 0; i < WARMUP; i++)
+            operation.run();
+        long start = Allocations.allocatedBytes();
+        for(int i = 0; i < MEASURED; i++)
+            operation.run();
+        return (Allocations.allocatedBytes() - start) / MEASURED;
+    }
+
+    private ViewGroup overlayParent(){
+        return activity.findViewById(android.R.id.content);
+    }
+
+    private static void idle(long millis){
+        shadowOf(Looper.getMainLooper()).idleFor(millis, TimeUnit.MILLISECONDS);
+    }
+
+    //Used heap after full collections. Robolectric keeps every shown dialog, so that list is cleared first.
+    private static long retainedHeap() throws InterruptedException {
+        ShadowDialog.reset();
+        Runtime runtime = Runtime.getRuntime();
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++){
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(20);
+            min = Math.min(min, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return min;
+    }
+
+    //Spread of heap samples taken without work in between, how much the measurement itself moves.
+    private static long retainedHeapNoise() throws InterruptedException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for(int i = 0; i < NOISE_SAMPLES; i++){
+            long sample = retainedHeap();
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+        }
+        return max - min;
+    }
+
+    //Windows added to the window manager of the process, the activity one included.
+    private static int windowCount() throws Exception {
+        Class<?> global = Class.forName("android.view.WindowManagerGlobal");
+        Object instance = global.getMethod("getInstance").invoke(null);
+        Field views = global.getDeclaredField("mViews");
+        views.setAccessible(true);
+        return ((List<?>) views.get(instance)).size();
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.fivesoft.dialog;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the current thread. Shared by the tests of
+ * the dialog module and the benchmark module.
+ */
+
+final class Allocations {
+
+    private Allocations(){}
+
+    /**
+     * Returns the bytes allocated by the current thread so far,
+     * or -1 when the JVM can't count allocations.
+     */
+
+    static long allocatedBytes(){
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean){
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if(sunBean.isThreadAllocatedMemorySupported())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}